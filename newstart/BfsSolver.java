@@ -1,5 +1,7 @@
 package bc19;
 
+import java.util.ArrayList;
+
 /**
  * A class for solving instances of Bfs problems
  */
@@ -112,28 +114,172 @@ class BfsSolver {
 
 	private static final int[] numDirs = {8, 16, 4, 0};
 
+	/** Where each level of dirsAvailable starts in allMoves */
+	private static final int[] levelOffset = {0, 8, 24};
+
+	/** Every move of magnitude at most 9, in the same order as dirsAvailable */
+	static final int[] allMoves = flattenDirections();
+
+	private static int[] flattenDirections() {
+		int[] result = new int[numDirs[0] + numDirs[1] + numDirs[2]];
+		int idx = 0;
+		for (int level = 0; level < 3; level++) {
+			for (int i = 0; i < numDirs[level]; i++) {
+				result[idx] = dirsAvailable[level][i];
+				idx++;
+			}
+		}
+		return result;
+	}
+
+	/** Compressed locations always fit in 12 bits, whatever the board size */
+	private static final int NUM_COMPRESSED_LOCATIONS = 1 << 12;
+
+	/** A* keys are f * this + h, so that ties in f are broken towards the goal */
+	private static final int ASTAR_KEY_SCALE = 128;
+
+	/** Location costs are clamped to this, which bounds the number of buckets Dial's algorithm needs */
+	static final int MAX_LOCATION_COST = 15;
+
+	/** How many squares along a route to consider when re-cutting it for fuel */
+	private static final int RESEGMENT_HORIZON = 64;
+
+	/** A move of r^2 at most 9 can skip over no more than this many squares of a dense route */
+	private static final int RESEGMENT_MAX_SPAN = 9;
+
+	/** How many squares of a solution a repair may skip ahead to when rejoining it */
+	private static final int REPAIR_LOOKAHEAD = 16;
+
+	/** How many moves long a repair's detour may be */
+	private static final int REPAIR_MAX_DEPTH = 4;
+
+	/** The most single hops a merged move of a solution is looked through for */
+	private static final int MAX_HOPS_PER_MOVE = 16;
+
+	/** How many distance fields to keep around before evicting the least recently used */
+	private static final int FIELD_CACHE_SIZE = 4;
+
+	/** How many field steps a field must have been read for before a blocked route may rebuild it */
+	private static final int FIELD_REBUILD_INTERVAL = 10;
+
 	private int[][] bfsVisited;
 	private int[][] fromDir;
 	private int bfsRunId;
 
+	// The visit condition of each location, worked out at most once per search
+	private int[][] visitCheckedRunId;
+	private boolean[][] visitResult;
+
 	private int[] solutionStack;
 	int solutionStackHead;
+	// The square the next move of the solution starts from
+	private int solutionLoc;
 	private int dest;
 
 	private DankQueue<Integer> qL;
 	private DankQueue<Integer> qD;
 
+	// The state of a search that is being run a slice at a time
+	private boolean searching;
+	private int searchSource;
+	private int searchMaxSpeed;
+	private int searchPreferredSpeed;
+	private LocationPredicate searchObjective;
+	private LocationPredicate searchVisit;
+	private int searchHint;
+	private int partialLoc;
+	private int partialDist;
+
+	private int[][] gScore;
+	private int[][] closedRunId;
+	private int[][] backVisited;
+	private int[][] backDir;
+	private int[][] backDist;
+	private int[] pathScratch;
+
+	// The squares of the solution a repair may rejoin, numbered in order
+	private int[][] waypointRun;
+	private int[][] waypointIndex;
+	private int waypointRunId;
+
+	// The waypoint the last hierarchical search was heading for, and where it was chosen
+	private int hierTarget;
+	private int hierSector;
+	private int hierWaypoint;
+
+	private int[] densePath;
+	private int numDense;
+	private int[] resegmentFuel;
+	private int[] resegmentFrom;
+	private IntMinHeap openSet;
+	private ArrayList<DankQueue<Integer>> buckets;
+
+	private DistanceField[] fieldCache;
+	private int fieldClock;
+	// Counts field steps, which is about one per turn
+	private int stepClock;
+	// The caller's field that the last pinned field step was read from
+	private DistanceField lastPinnedField;
+	private int incrementalRadius;
+
 	BfsSolver() {
 		bfsVisited = new int[MyRobot.boardSize][MyRobot.boardSize];
 		fromDir = new int[MyRobot.boardSize][MyRobot.boardSize];
 		bfsRunId = 0;
 
+		visitCheckedRunId = new int[MyRobot.boardSize][MyRobot.boardSize];
+		visitResult = new boolean[MyRobot.boardSize][MyRobot.boardSize];
+
 		solutionStack = new int[MyRobot.boardSize*MyRobot.boardSize];
 		solutionStackHead = 0;
 		dest = Vector.INVALID;
 
 		qL = new DankQueue<>(MyRobot.boardSize*MyRobot.boardSize);
 		qD = new DankQueue<>(MyRobot.boardSize*MyRobot.boardSize);
+
+		searching = false;
+		searchSource = Vector.INVALID;
+		solutionLoc = Vector.INVALID;
+
+		gScore = new int[MyRobot.boardSize][MyRobot.boardSize];
+		closedRunId = new int[MyRobot.boardSize][MyRobot.boardSize];
+		backVisited = new int[MyRobot.boardSize][MyRobot.boardSize];
+		backDir = new int[MyRobot.boardSize][MyRobot.boardSize];
+		backDist = new int[MyRobot.boardSize][MyRobot.boardSize];
+		pathScratch = new int[MyRobot.boardSize*MyRobot.boardSize];
+
+		waypointRun = new int[MyRobot.boardSize][MyRobot.boardSize];
+		waypointIndex = new int[MyRobot.boardSize][MyRobot.boardSize];
+		waypointRunId = 0;
+
+		hierTarget = Vector.INVALID;
+		hierSector = -1;
+		hierWaypoint = Vector.INVALID;
+
+		densePath = new int[RESEGMENT_HORIZON+4];
+		resegmentFuel = new int[(RESEGMENT_HORIZON+4)*(RESEGMENT_HORIZON+4)];
+		resegmentFrom = new int[(RESEGMENT_HORIZON+4)*(RESEGMENT_HORIZON+4)];
+		openSet = new IntMinHeap(NUM_COMPRESSED_LOCATIONS);
+		buckets = new ArrayList<>();
+		for (int i = 0; i < MAX_LOCATION_COST+2; i++) {
+			buckets.add(new DankQueue<>(MyRobot.boardSize*MyRobot.boardSize));
+		}
+
+		fieldCache = new DistanceField[FIELD_CACHE_SIZE];
+		fieldClock = 0;
+		stepClock = 0;
+		lastPinnedField = null;
+		incrementalRadius = 0;
+	}
+
+	/**
+	 * Turns on incremental replanning for distance fields
+	 * Every fieldStep then patches the field with the changes seen around the robot instead of
+	 * waiting for the route to be blocked and rebuilding the whole field
+	 * @param radiusSquared How far around the robot to look for changes, or 0 to turn this off
+	 */
+	void setIncrementalRepairRadius(int radiusSquared) {
+		incrementalRadius = radiusSquared;
 	}
 
 	/**
@@ -147,6 +293,18 @@ class BfsSolver {
 		return ctz_lookup[(x&-x)%37];
 	}
 
+	/**
+	 * Evaluates the visit condition through a per-search grid
+	 * Each location is reached from up to 28 neighbours, but only asked about once
+	 */
+	private boolean canVisit(int location, LocationPredicate visitCondition) {
+		if (Vector.get(location, visitCheckedRunId) != bfsRunId) {
+			Vector.set(location, visitCheckedRunId, bfsRunId);
+			Vector.set(location, visitResult, visitCondition.test(location));
+		}
+		return Vector.get(location, visitResult);
+	}
+
 	/**
 	 * This bfs function should be self-explanatory
 	 * @param source The location of the start of the Bfs, serialised by the Vector class
@@ -156,8 +314,22 @@ class BfsSolver {
 	 * @param visitCondition Which states to visit and therefore add to the queue
 	 */
 	void solve(int source, int maxSpeed, int preferredSpeed,
-			java.util.function.Function<Integer, Boolean> objectiveCondition,
-			java.util.function.Function<Integer, Boolean> visitCondition) {
+			LocationPredicate objectiveCondition,
+			LocationPredicate visitCondition) {
+
+		beginSolve(source, maxSpeed, preferredSpeed, objectiveCondition, visitCondition, Vector.INVALID);
+		continueSolve(Integer.MAX_VALUE, 0);
+	}
+
+	/**
+	 * Sets up a Bfs that can be run a slice at a time with continueSolve, across several turns
+	 * The queues are kept between slices, so no work is repeated
+	 * @param progressHint A location that partial steps should head towards, or Vector.INVALID for none
+	 */
+	void beginSolve(int source, int maxSpeed, int preferredSpeed,
+			LocationPredicate objectiveCondition,
+			LocationPredicate visitCondition,
+			int progressHint) {
 
 		bfsRunId++;
 		solutionStackHead = 0;
@@ -169,24 +341,69 @@ class BfsSolver {
 		Vector.set(source, bfsVisited, bfsRunId);
 		Vector.set(source, fromDir, Vector.INVALID);
 
+		searching = true;
+		searchSource = source;
+		solutionLoc = source;
+		searchMaxSpeed = maxSpeed;
+		searchPreferredSpeed = preferredSpeed;
+		searchObjective = objectiveCondition;
+		searchVisit = visitCondition;
+		searchHint = progressHint;
+		partialLoc = Vector.INVALID;
+		partialDist = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Expands more of a search set up by beginSolve
+	 * @param nodeBudget The most nodes to expand in this slice
+	 * @param timeBudget The most milliseconds to spend in this slice, or 0 for no limit
+	 * @return Whether the search has finished, in which case the solution is ready
+	 */
+	boolean continueSolve(int nodeBudget, int timeBudget) {
+		if (!searching) {
+			return true;
+		}
+
+		int maxSpeed = searchMaxSpeed;
+		LocationPredicate objectiveCondition = searchObjective;
+		LocationPredicate visitCondition = searchVisit;
+
+		long startTime = (timeBudget > 0) ? System.currentTimeMillis() : 0;
+		int expanded = 0;
+
 		while (!qL.isEmpty()) {
+			if (expanded >= nodeBudget ||
+				(timeBudget > 0 && (expanded & 31) == 0 && System.currentTimeMillis() - startTime >= timeBudget)) {
+				return false;
+			}
+			expanded++;
+
 			int uLoc = qL.poll();
 			int ud = qD.poll();
-			if (objectiveCondition.apply(uLoc)) {
+			if (objectiveCondition.test(uLoc)) {
 				dest = uLoc;
 				break;
 			}
+			if (searchHint != Vector.INVALID && ud != Vector.INVALID &&
+				Vector.distanceSquared(uLoc, searchHint) < partialDist) {
+
+				partialDist = Vector.distanceSquared(uLoc, searchHint);
+				partialLoc = uLoc;
+			}
 
+			int onMap = MoveTable.onMapMovesFrom(uLoc);
+			int passable = MoveTable.movesFrom(uLoc, maxSpeed);
 			int level = 0;
 			int curMsk = (1 << numDirs[0]) - 1;
 			while (curMsk > 0) {
 				int nextMsk = (1 << numDirs[level+1]) - 1;
 				for (; curMsk > 0; curMsk ^= (curMsk&-curMsk)) {
-					int dir = dirsAvailable[level][__notbuiltin_ctz(curMsk)];
+					int moveIdx = levelOffset[level] + __notbuiltin_ctz(curMsk);
+					int dir = allMoves[moveIdx];
 					if (Vector.magnitude(dir) <= maxSpeed) {
-						int v = Vector.add(uLoc, dir);
-						if (v != Vector.INVALID) {
-							if (visitCondition.apply(v)) {
+						if (((onMap >>> moveIdx) & 1) != 0) {
+							int v = uLoc + dir;
+							if (((passable >>> moveIdx) & 1) != 0 && canVisit(v, visitCondition)) {
 								if (Vector.get(v, bfsVisited) != bfsRunId) {
 									Vector.set(v, bfsVisited, bfsRunId);
 									Vector.set(v, fromDir, dir);
@@ -225,24 +442,614 @@ class BfsSolver {
 				curMsk = nextMsk;
 			}
 		}
+		searching = false;
 		if (dest != Vector.INVALID) {
-			int curLoc = dest;
-			while (Vector.get(curLoc, fromDir) != Vector.INVALID) {
-				boolean shouldAdd = true;
-				if (solutionStackHead > 0) {
-					int tmp = solutionStack[solutionStackHead-1] + Vector.get(curLoc, fromDir);
-					if (Vector.magnitude(tmp) <= preferredSpeed) {
-						solutionStack[solutionStackHead-1] = tmp;
-						shouldAdd = false;
+			buildSolution(searchPreferredSpeed);
+		}
+		return true;
+	}
+
+	boolean isSolving() {
+		return searching;
+	}
+
+	/**
+	 * A best-effort move while a sliced search is still running
+	 * The route is read back out of the search tree every turn, so a robot that took the partial step
+	 * last turn keeps following it, towards whichever explored location is now the best
+	 * @return The next move towards the explored location closest to the progress hint, or Vector.INVALID
+	 * if there is none, the robot is already there, or the robot has left the route to it
+	 */
+	int partialStep(int currentLoc) {
+		if (!searching || partialLoc == Vector.INVALID) {
+			return Vector.INVALID;
+		}
+		int curLoc = partialLoc;
+		while (Vector.get(curLoc, fromDir) != Vector.INVALID) {
+			int prevLoc = Vector.add(curLoc, -Vector.get(curLoc, fromDir));
+			if (prevLoc == currentLoc) {
+				return Vector.get(curLoc, fromDir);
+			}
+			curLoc = prevLoc;
+		}
+		return Vector.INVALID;
+	}
+
+	/**
+	 * Drops the start of a finished solution, for when the robot has already moved partway along it
+	 * or has been moved by something else since the solution was found
+	 * A robot that took single hop partial steps may be standing partway through a merged move,
+	 * in which case the rest of that move is kept
+	 * @return Whether the location lies on the rest of the solution at all; if not, the solution is dropped
+	 */
+	boolean advanceSolutionTo(int location) {
+		if (searching) {
+			return false;
+		}
+		int curLoc = solutionLoc;
+		for (int i = solutionStackHead-1; i >= 0; i--) {
+			if (curLoc == location) {
+				solutionStackHead = i+1;
+				solutionLoc = location;
+				return true;
+			}
+			int nextLoc = Vector.add(curLoc, solutionStack[i]);
+			if (liesWithinMove(curLoc, nextLoc, location) &&
+				Vector.magnitude(nextLoc - location) <= Vector.magnitude(solutionStack[i])) {
+
+				solutionStack[i] = nextLoc - location;
+				solutionStackHead = i+1;
+				solutionLoc = location;
+				return true;
+			}
+			curLoc = nextLoc;
+		}
+		solutionStackHead = 0;
+		solutionLoc = location;
+		return curLoc == location;
+	}
+
+	/**
+	 * Whether a location is one of the squares a merged move hops through, read back out of the search tree
+	 * The tree may since have been overwritten by another search, in which case the hops won't lead back
+	 * to the start of the move and nothing is matched
+	 */
+	private boolean liesWithinMove(int fromLoc, int toLoc, int location) {
+		boolean seen = false;
+		int curLoc = toLoc;
+		for (int hops = 0; hops < MAX_HOPS_PER_MOVE; hops++) {
+			if (curLoc == Vector.INVALID || Vector.get(curLoc, bfsVisited) != bfsRunId ||
+				Vector.get(curLoc, fromDir) == Vector.INVALID) {
+
+				return false;
+			}
+			curLoc = Vector.add(curLoc, -Vector.get(curLoc, fromDir));
+			if (curLoc == fromLoc) {
+				return seen;
+			}
+			if (curLoc == location) {
+				seen = true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks back from dest along fromDir, merging consecutive moves that fit within the preferred speed
+	 */
+	private void buildSolution(int preferredSpeed) {
+		buildSolutionFrom(dest, preferredSpeed);
+	}
+
+	private void buildSolutionFrom(int endLoc, int preferredSpeed) {
+		int curLoc = endLoc;
+		while (Vector.get(curLoc, fromDir) != Vector.INVALID) {
+			pushMove(Vector.get(curLoc, fromDir), preferredSpeed);
+			curLoc = Vector.add(curLoc, -Vector.get(curLoc, fromDir));
+		}
+	}
+
+	/**
+	 * Puts a move in front of the solution, merging it into the current first move if that fits within the preferred speed
+	 */
+	private void pushMove(int dir, int preferredSpeed) {
+		if (solutionStackHead > 0) {
+			int tmp = solutionStack[solutionStackHead-1] + dir;
+			if (Vector.magnitude(tmp) <= preferredSpeed) {
+				solutionStack[solutionStackHead-1] = tmp;
+				return;
+			}
+		}
+		solutionStack[solutionStackHead] = dir;
+		solutionStackHead++;
+	}
+
+	/**
+	 * A lower bound on the number of moves left, which is both admissible and consistent
+	 * No move covers more than sqrt(speed) in a straight line, or floor(sqrt(speed)) along either axis
+	 */
+	private static int movesHeuristic(int location, int target, int speed, int axisStep) {
+		int dx = Math.abs(Vector.getX(target) - Vector.getX(location));
+		int dy = Math.abs(Vector.getY(target) - Vector.getY(location));
+		int byAxis = (Math.max(dx, dy) + axisStep - 1) / axisStep;
+		int byLength = (int) Math.ceil(Math.sqrt((double)(dx*dx + dy*dy) / speed));
+		return Math.max(byAxis, byLength);
+	}
+
+	/**
+	 * A goal-directed search for when there is exactly one destination
+	 * Costs are counted in moves, so the resulting route takes as few turns as the plain Bfs
+	 * @param source The location of the start of the search, serialised by the Vector class
+	 * @param target The destination, which may be entered even if it fails the visit condition
+	 * @param maxSpeed The maximum allowed speed
+	 * @param preferredSpeed The preferred maximum movement; may be broken if wall-jump needed
+	 * @param visitCondition Which states to visit and therefore add to the open set
+	 */
+	void solveTowards(int source, int target, int maxSpeed, int preferredSpeed,
+			LocationPredicate visitCondition) {
+
+		bfsRunId++;
+		solutionStackHead = 0;
+		dest = Vector.INVALID;
+		searching = false;
+		searchSource = source;
+		solutionLoc = source;
+		openSet.clear();
+		if (source == Vector.INVALID || target == Vector.INVALID || maxSpeed <= 0 ||
+			!MoveTable.sameComponent(source, target, maxSpeed)) {
+
+			return;
+		}
+
+		int axisStep = (int) Math.sqrt(maxSpeed);
+		Vector.set(source, bfsVisited, bfsRunId);
+		Vector.set(source, fromDir, Vector.INVALID);
+		Vector.set(source, gScore, 0);
+		openSet.push(Vector.compress(source), movesHeuristic(source, target, maxSpeed, axisStep) * (ASTAR_KEY_SCALE+1));
+
+		while (!openSet.isEmpty()) {
+			int uLoc = Vector.makeMapLocationFromCompressed(openSet.poll());
+			if (uLoc == target) {
+				dest = uLoc;
+				break;
+			}
+			Vector.set(uLoc, closedRunId, bfsRunId);
+			int ug = Vector.get(uLoc, gScore);
+
+			for (int msk = MoveTable.movesFrom(uLoc, maxSpeed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, closedRunId) != bfsRunId &&
+					(v == target || canVisit(v, visitCondition))) {
+
+					if (Vector.get(v, bfsVisited) != bfsRunId || ug+1 < Vector.get(v, gScore)) {
+						Vector.set(v, bfsVisited, bfsRunId);
+						Vector.set(v, gScore, ug+1);
+						Vector.set(v, fromDir, dir);
+						int h = movesHeuristic(v, target, maxSpeed, axisStep);
+						openSet.push(Vector.compress(v), (ug+1+h) * ASTAR_KEY_SCALE + h);
 					}
 				}
-				if (shouldAdd) {
-					solutionStack[solutionStackHead] = Vector.get(curLoc, fromDir);
-					solutionStackHead++;
+			}
+		}
+		if (dest != Vector.INVALID) {
+			buildSolution(preferredSpeed);
+		}
+	}
+
+	/**
+	 * A Bfs run from both ends at once, for when there is exactly one destination
+	 * Whole layers are expanded at a time, always on the side with the smaller frontier, and the search stops
+	 * at the end of the first layer in which the two sides touch, so the route is still as short as the plain Bfs
+	 * @param source The location of the start of the search, serialised by the Vector class
+	 * @param target The destination, which may be entered even if it fails the visit condition
+	 * @param maxSpeed The maximum allowed speed
+	 * @param preferredSpeed The preferred maximum movement; may be broken if wall-jump needed
+	 * @param visitCondition Which states to visit and therefore add to either frontier
+	 */
+	void solveBidirectional(int source, int target, int maxSpeed, int preferredSpeed,
+			LocationPredicate visitCondition) {
+
+		bfsRunId++;
+		solutionStackHead = 0;
+		dest = Vector.INVALID;
+		searching = false;
+		searchSource = source;
+		solutionLoc = source;
+		if (source == Vector.INVALID || target == Vector.INVALID || maxSpeed <= 0 ||
+			!MoveTable.sameComponent(source, target, maxSpeed)) {
+
+			return;
+		}
+		if (source == target) {
+			dest = target;
+			return;
+		}
+
+		// qL holds the forward frontier and qD the backward one
+		qL.clear(); qD.clear();
+		Vector.set(source, bfsVisited, bfsRunId);
+		Vector.set(source, fromDir, Vector.INVALID);
+		Vector.set(source, gScore, 0);
+		qL.add(source);
+		Vector.set(target, backVisited, bfsRunId);
+		Vector.set(target, backDir, Vector.INVALID);
+		Vector.set(target, backDist, 0);
+		qD.add(target);
+
+		int meetLoc = Vector.INVALID;
+		int meetDist = Integer.MAX_VALUE;
+		while (meetLoc == Vector.INVALID && !qL.isEmpty() && !qD.isEmpty()) {
+			boolean forwards = qL.size() <= qD.size();
+			DankQueue<Integer> frontier = forwards ? qL : qD;
+			for (int layerSize = frontier.size(); layerSize > 0; layerSize--) {
+				int uLoc = frontier.poll();
+				int ud = Vector.get(uLoc, forwards ? gScore : backDist);
+				for (int msk = MoveTable.movesFrom(uLoc, maxSpeed); msk != 0; msk ^= (msk&-msk)) {
+					int dir = allMoves[MoveTable.lowestBit(msk)];
+					int v = uLoc + dir;
+					if (forwards) {
+						if (Vector.get(v, bfsVisited) == bfsRunId || (v != target && !canVisit(v, visitCondition))) {
+							continue;
+						}
+						Vector.set(v, bfsVisited, bfsRunId);
+						Vector.set(v, fromDir, dir);
+						Vector.set(v, gScore, ud+1);
+						qL.add(v);
+						if (Vector.get(v, backVisited) == bfsRunId && ud+1+Vector.get(v, backDist) < meetDist) {
+							meetLoc = v;
+							meetDist = ud+1+Vector.get(v, backDist);
+						}
+					} else {
+						// The robot will move from v onto uLoc, so v has to be visitable unless it is the source
+						if (Vector.get(v, backVisited) == bfsRunId || (v != source && !canVisit(v, visitCondition))) {
+							continue;
+						}
+						Vector.set(v, backVisited, bfsRunId);
+						Vector.set(v, backDir, -dir);
+						Vector.set(v, backDist, ud+1);
+						qD.add(v);
+						if (Vector.get(v, bfsVisited) == bfsRunId && ud+1+Vector.get(v, gScore) < meetDist) {
+							meetLoc = v;
+							meetDist = ud+1+Vector.get(v, gScore);
+						}
+					}
 				}
-				curLoc = Vector.add(curLoc, -Vector.get(curLoc, fromDir));
 			}
 		}
+		if (meetLoc == Vector.INVALID) {
+			return;
+		}
+
+		// The backward half runs from the meeting point to the target, but the stack is filled from the end
+		int numBackMoves = 0;
+		for (int curLoc = meetLoc; curLoc != target; curLoc = Vector.add(curLoc, Vector.get(curLoc, backDir))) {
+			pathScratch[numBackMoves] = Vector.get(curLoc, backDir);
+			numBackMoves++;
+		}
+		for (int i = numBackMoves-1; i >= 0; i--) {
+			pushMove(pathScratch[i], preferredSpeed);
+		}
+		buildSolutionFrom(meetLoc, preferredSpeed);
+		dest = target;
+	}
+
+	/**
+	 * Plans a long trip on a region graph, and only searches the real board as far as its first waypoint
+	 * Falls back to a bidirectional search if the graph has no route or its waypoint is currently blocked
+	 * @param source The location of the start of the search, serialised by the Vector class
+	 * @param target The destination, which may be entered even if it fails the visit condition
+	 * @param maxSpeed The maximum allowed speed, which should match the region graph's
+	 * @param preferredSpeed The preferred maximum movement; may be broken if wall-jump needed
+	 * @param visitCondition Which states to visit and therefore add to the open set
+	 * @param regionGraph The abstract graph of the static terrain
+	 */
+	void solveHierarchical(int source, int target, int maxSpeed, int preferredSpeed,
+			LocationPredicate visitCondition, RegionGraph regionGraph) {
+
+		// Keep heading for the same waypoint until we leave the sector, otherwise near-ties in the abstract
+		// route can have the robot swap between two waypoints every turn
+		int waypoint = hierWaypoint;
+		if (target != hierTarget || regionGraph.getSector(source) != hierSector || waypoint == source) {
+			waypoint = regionGraph.firstWaypoint(source, target);
+			hierTarget = target;
+			hierSector = regionGraph.getSector(source);
+			hierWaypoint = waypoint;
+		}
+		if (waypoint == Vector.INVALID || (waypoint != target && !visitCondition.test(waypoint))) {
+			solveBidirectional(source, target, maxSpeed, preferredSpeed, visitCondition);
+			return;
+		}
+		solveTowards(source, waypoint, maxSpeed, preferredSpeed, visitCondition);
+	}
+
+	/**
+	 * Finds the cheapest route where every move costs one plus the cost of the location it lands on
+	 * Uses Dial's algorithm: since edge weights are small integers, a ring of buckets replaces the heap
+	 * and the whole search runs in about the time of a Bfs
+	 * @param source The location of the start of the search, serialised by the Vector class
+	 * @param maxSpeed The maximum allowed speed
+	 * @param preferredSpeed The preferred maximum movement; may be broken if wall-jump needed
+	 * @param objectiveCondition Destination checker
+	 * @param visitCondition Which states may be walked through at all
+	 * @param locationCost The extra cost of landing on each location, clamped to MAX_LOCATION_COST
+	 */
+	void solveWeighted(int source, int maxSpeed, int preferredSpeed,
+			LocationPredicate objectiveCondition,
+			LocationPredicate visitCondition,
+			LocationCost locationCost) {
+
+		bfsRunId++;
+		solutionStackHead = 0;
+		dest = Vector.INVALID;
+		searching = false;
+		searchSource = source;
+		solutionLoc = source;
+		for (int i = 0; i < buckets.size(); i++) {
+			buckets.get(i).clear();
+		}
+		if (source == Vector.INVALID) {
+			return;
+		}
+
+		Vector.set(source, bfsVisited, bfsRunId);
+		Vector.set(source, fromDir, Vector.INVALID);
+		Vector.set(source, gScore, 0);
+		buckets.get(0).add(source);
+		int pending = 1;
+		int curCost = 0;
+
+		while (pending > 0) {
+			while (buckets.get(curCost % buckets.size()).isEmpty()) {
+				curCost++;
+			}
+			int uLoc = buckets.get(curCost % buckets.size()).poll();
+			pending--;
+			if (Vector.get(uLoc, closedRunId) == bfsRunId || Vector.get(uLoc, gScore) != curCost) {
+				continue;
+			}
+			Vector.set(uLoc, closedRunId, bfsRunId);
+			if (objectiveCondition.test(uLoc)) {
+				dest = uLoc;
+				break;
+			}
+
+			for (int msk = MoveTable.movesFrom(uLoc, maxSpeed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, closedRunId) != bfsRunId && canVisit(v, visitCondition)) {
+					int nd = curCost + 1 + Math.max(0, Math.min(MAX_LOCATION_COST, locationCost.cost(v)));
+					if (Vector.get(v, bfsVisited) != bfsRunId || nd < Vector.get(v, gScore)) {
+						Vector.set(v, bfsVisited, bfsRunId);
+						Vector.set(v, gScore, nd);
+						Vector.set(v, fromDir, dir);
+						buckets.get(nd % buckets.size()).add(v);
+						pending++;
+					}
+				}
+			}
+		}
+		if (dest != Vector.INVALID) {
+			buildSolution(preferredSpeed);
+		}
+	}
+
+	/**
+	 * Patches the current solution around a step that has just turned out to be blocked
+	 * A small Bfs around the robot looks for a way back onto the solution further along, and the moves
+	 * after the point where it rejoins are kept as they are
+	 * @param source The robot's current location
+	 * @param blockedStep The move just taken from nextStep, which can't be made
+	 * @param maxSpeed The maximum allowed speed
+	 * @param preferredSpeed The preferred maximum movement; may be broken if wall-jump needed
+	 * @param visitCondition Which states to visit while looking for a detour
+	 * @return Whether the solution was patched; if not, it is left empty and the caller should search again
+	 */
+	boolean repairSolution(int source, int blockedStep, int maxSpeed, int preferredSpeed,
+			LocationPredicate visitCondition) {
+
+		if (searching || source == Vector.INVALID || blockedStep == Vector.INVALID) {
+			solutionStackHead = 0;
+			return false;
+		}
+
+		// Number the next few squares of the solution, starting with the blocked one
+		waypointRunId++;
+		int numWaypoints = 0;
+		int curLoc = Vector.add(source, blockedStep);
+		while (curLoc != Vector.INVALID && numWaypoints < REPAIR_LOOKAHEAD) {
+			numWaypoints++;
+			Vector.set(curLoc, waypointRun, waypointRunId);
+			Vector.set(curLoc, waypointIndex, numWaypoints);
+			if (numWaypoints > solutionStackHead) {
+				break;
+			}
+			curLoc = Vector.add(curLoc, solutionStack[solutionStackHead-numWaypoints]);
+		}
+
+		bfsRunId++;
+		qL.clear(); qD.clear();
+		qL.add(source);
+		qD.add(0);
+		Vector.set(source, bfsVisited, bfsRunId);
+		Vector.set(source, fromDir, Vector.INVALID);
+
+		int bestLoc = Vector.INVALID;
+		int bestIndex = 0;
+		int bestCost = Integer.MAX_VALUE;
+		while (!qL.isEmpty()) {
+			int uLoc = qL.poll();
+			int ud = qD.poll();
+			if (ud >= REPAIR_MAX_DEPTH) {
+				continue;
+			}
+			for (int msk = MoveTable.movesFrom(uLoc, maxSpeed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, bfsVisited) == bfsRunId || !canVisit(v, visitCondition)) {
+					continue;
+				}
+				Vector.set(v, bfsVisited, bfsRunId);
+				Vector.set(v, fromDir, dir);
+				qL.add(v);
+				qD.add(ud+1);
+				// The cost of rejoining here is the detour plus whatever is left of the solution after this point
+				if (Vector.get(v, waypointRun) == waypointRunId && Vector.get(v, waypointIndex) > 1) {
+					int index = Vector.get(v, waypointIndex);
+					int cost = ud+1 + (solutionStackHead+1-index);
+					if (cost < bestCost) {
+						bestLoc = v;
+						bestIndex = index;
+						bestCost = cost;
+					}
+				}
+			}
+		}
+		if (bestLoc == Vector.INVALID) {
+			solutionStackHead = 0;
+			return false;
+		}
+
+		solutionStackHead -= bestIndex-1;
+		buildSolutionFrom(bestLoc, preferredSpeed);
+		searchSource = source;
+		solutionLoc = source;
+		return true;
+	}
+
+	/**
+	 * Re-cuts the start of the current solution to spend less fuel, allowing a few more turns than it takes now
+	 * Fuel is proportional to r^2, so splitting long moves through free squares on the way saves fuel
+	 * @param source The robot's current location, at the start of the remaining solution
+	 * @param maxSpeed The maximum allowed speed
+	 * @param maxExtraTurns How many more turns than the current route the new route may take
+	 * @param visitCondition Which squares the split moves may land on
+	 */
+	void minimiseFuel(int source, int maxSpeed, int maxExtraTurns, LocationPredicate visitCondition) {
+		int numMoves = buildResegmentTable(source, maxSpeed, visitCondition);
+		if (numMoves <= 0) {
+			return;
+		}
+		int maxTurns = Math.min(numDense-1, numMoves + Math.max(0, maxExtraTurns));
+		int bestTurns = numMoves;
+		int bestFuel = Integer.MAX_VALUE;
+		for (int k = 1; k <= maxTurns; k++) {
+			if (segmentFuel(k, numDense-1) < bestFuel) {
+				bestTurns = k;
+				bestFuel = segmentFuel(k, numDense-1);
+			}
+		}
+		applyResegmentation(bestTurns, numMoves);
+	}
+
+	/**
+	 * Re-cuts the start of the current solution to take as few turns as possible within a fuel budget
+	 * If even the cheapest cut is over budget, the cheapest cut is used
+	 * @param source The robot's current location, at the start of the remaining solution
+	 * @param maxSpeed The maximum allowed speed
+	 * @param fuelBudget The most fuel to spend on the re-cut stretch, in units of r^2
+	 * @param visitCondition Which squares the split moves may land on
+	 */
+	void minimiseTurns(int source, int maxSpeed, int fuelBudget, LocationPredicate visitCondition) {
+		int numMoves = buildResegmentTable(source, maxSpeed, visitCondition);
+		if (numMoves <= 0) {
+			return;
+		}
+		int cheapestTurns = numMoves;
+		int cheapestFuel = Integer.MAX_VALUE;
+		for (int k = 1; k < numDense; k++) {
+			int fuel = segmentFuel(k, numDense-1);
+			if (fuel <= fuelBudget) {
+				applyResegmentation(k, numMoves);
+				return;
+			}
+			if (fuel < cheapestFuel) {
+				cheapestTurns = k;
+				cheapestFuel = fuel;
+			}
+		}
+		applyResegmentation(cheapestTurns, numMoves);
+	}
+
+	private int segmentFuel(int turns, int denseIdx) {
+		return resegmentFuel[turns*(RESEGMENT_HORIZON+4) + denseIdx];
+	}
+
+	/**
+	 * Lays the first RESEGMENT_HORIZON squares of the solution out densely, splitting long moves into king steps
+	 * wherever the square in between is free, then works out the cheapest way to reach each of those squares
+	 * in each number of turns
+	 * @return How many moves of the solution were laid out, or 0 if there is nothing to do
+	 */
+	private int buildResegmentTable(int source, int maxSpeed, LocationPredicate visitCondition) {
+		if (searching || solutionStackHead == 0 || source == Vector.INVALID) {
+			return 0;
+		}
+		numDense = 1;
+		densePath[0] = source;
+		int numMoves = 0;
+		int curLoc = source;
+		while (numMoves < solutionStackHead && numDense <= RESEGMENT_HORIZON) {
+			int nextLoc = Vector.add(curLoc, solutionStack[solutionStackHead-1-numMoves]);
+			if (nextLoc == Vector.INVALID) {
+				return 0;
+			}
+			// Peel king steps off the front of the move for as long as the square they land on is free
+			while (Vector.magnitude(nextLoc - curLoc) > 2) {
+				int dx = Vector.getX(nextLoc) - Vector.getX(curLoc);
+				int dy = Vector.getY(nextLoc) - Vector.getY(curLoc);
+				int midLoc = Vector.add(curLoc, Vector.makeDirection((dx > 0) ? 1 : ((dx < 0) ? -1 : 0), (dy > 0) ? 1 : ((dy < 0) ? -1 : 0)));
+				if (!visitCondition.test(midLoc)) {
+					break;
+				}
+				densePath[numDense] = midLoc;
+				numDense++;
+				curLoc = midLoc;
+			}
+			densePath[numDense] = nextLoc;
+			numDense++;
+			curLoc = nextLoc;
+			numMoves++;
+		}
+
+		int stride = RESEGMENT_HORIZON+4;
+		for (int k = 0; k < numDense; k++) {
+			for (int j = 0; j < numDense; j++) {
+				resegmentFuel[k*stride + j] = Integer.MAX_VALUE;
+			}
+		}
+		resegmentFuel[0] = 0;
+		for (int k = 1; k < numDense; k++) {
+			for (int j = k; j < numDense; j++) {
+				for (int i = j-1; i >= Math.max(k-1, j-RESEGMENT_MAX_SPAN); i--) {
+					int prevFuel = resegmentFuel[(k-1)*stride + i];
+					int r2 = Vector.magnitude(densePath[j] - densePath[i]);
+					if (prevFuel != Integer.MAX_VALUE && r2 <= maxSpeed && prevFuel + r2 < resegmentFuel[k*stride + j]) {
+						resegmentFuel[k*stride + j] = prevFuel + r2;
+						resegmentFrom[k*stride + j] = i;
+					}
+				}
+			}
+		}
+		return numMoves;
+	}
+
+	/**
+	 * Swaps the first moves of the solution for the cut found by the table
+	 */
+	private void applyResegmentation(int turns, int numMoves) {
+		int stride = RESEGMENT_HORIZON+4;
+		if (segmentFuel(turns, numDense-1) == Integer.MAX_VALUE) {
+			return;
+		}
+		solutionStackHead -= numMoves;
+		int j = numDense-1;
+		for (int k = turns; k > 0; k--) {
+			int i = resegmentFrom[k*stride + j];
+			solutionStack[solutionStackHead] = densePath[j] - densePath[i];
+			solutionStackHead++;
+			j = i;
+		}
 	}
 
 	int nextStep() {
@@ -250,6 +1057,7 @@ class BfsSolver {
 			return Vector.INVALID;
 		}
 		solutionStackHead--;
+		solutionLoc = Vector.add(solutionLoc, solutionStack[solutionStackHead]);
 		return solutionStack[solutionStackHead];
 	}
 
@@ -260,4 +1068,151 @@ class BfsSolver {
 	boolean wasVisited(int location) {
 		return Vector.get(location, bfsVisited) == bfsRunId;
 	}
+
+	/**
+	 * Looks up the distance field for a target, building it if it is not cached
+	 * The least recently used field is recycled when the cache is full
+	 */
+	DistanceField getField(int target, int speed, boolean adjacentGoal,
+			LocationPredicate visitCondition) {
+
+		fieldClock++;
+		int victim = 0;
+		for (int i = 0; i < FIELD_CACHE_SIZE; i++) {
+			if (fieldCache[i] != null && fieldCache[i].matches(target, speed, adjacentGoal)) {
+				fieldCache[i].touch(fieldClock);
+				return fieldCache[i];
+			}
+			if (fieldCache[victim] != null &&
+				(fieldCache[i] == null || fieldCache[i].getLastUsed() < fieldCache[victim].getLastUsed())) {
+
+				victim = i;
+			}
+		}
+		if (fieldCache[victim] == null) {
+			fieldCache[victim] = new DistanceField();
+		}
+		fieldCache[victim].retarget(target, speed, adjacentGoal);
+		rebuild(fieldCache[victim], visitCondition);
+		fieldCache[victim].touch(fieldClock);
+		return fieldCache[victim];
+	}
+
+	/**
+	 * Reads the next step towards a target out of a cached distance field
+	 * The field is only rebuilt if every one of its best steps has since become blocked,
+	 * and at most once every few steps, so a boxed in robot doesn't rebuild every turn
+	 * In incremental mode, the field is repaired around the source first, so this is rarely needed
+	 * @param source The current location, serialised by the Vector class
+	 * @param target The location to path towards
+	 * @param speed The maximum movement per step
+	 * @param adjacentGoal Whether standing next to the target is enough
+	 * @param visitCondition Which states may be walked through
+	 * @return The direction to move in, or Vector.INVALID if already there or no route exists
+	 */
+	int fieldStep(int source, int target, int speed, boolean adjacentGoal,
+			LocationPredicate visitCondition) {
+
+		stepClock++;
+		if (target == Vector.INVALID || (!adjacentGoal && !MoveTable.sameComponent(source, target, speed))) {
+			return Vector.INVALID;
+		}
+		DistanceField field = getField(target, speed, adjacentGoal, visitCondition);
+		if (field.isGoal(source)) {
+			return Vector.INVALID;
+		}
+		if (incrementalRadius > 0) {
+			field.repair(source, incrementalRadius, visitCondition);
+		}
+
+		int dir = field.descend(source, false, visitCondition);
+		if (needsRebuild(field, source, dir, visitCondition)) {
+			// The field is stale, so rebuild it with what we can see now
+			rebuild(field, visitCondition);
+			dir = field.descend(source, false, visitCondition);
+		}
+		if (dir != Vector.INVALID && field.getDistance(Vector.add(source, dir)) == DistanceField.UNREACHABLE) {
+			return Vector.INVALID;
+		}
+		return dir;
+	}
+
+	/**
+	 * Reads the next step out of a distance field that the caller keeps for itself, outside the cache
+	 * Such a field is only checked against occupancy at the next step: it is repaired around the source
+	 * when that step is blocked, and rebuilt if the repair doesn't clear the way and the field is a few steps old
+	 * A field that is picked up again after a while, e.g. for a new trip, is rebuilt first, since
+	 * anything that was in the way when it was last built may have moved out of view since
+	 * @param field The caller's field, which is retargeted and built if it doesn't match the target
+	 * @param source The current location, serialised by the Vector class
+	 * @param target The location to path towards
+	 * @param speed The maximum movement per step
+	 * @param adjacentGoal Whether standing next to the target is enough
+	 * @param visitCondition Which states may be walked through
+	 * @return The direction to move in, or Vector.INVALID if already there or no route exists
+	 */
+	int pinnedFieldStep(DistanceField field, int source, int target, int speed, boolean adjacentGoal,
+			LocationPredicate visitCondition) {
+
+		stepClock++;
+		if (target == Vector.INVALID || (!adjacentGoal && !MoveTable.sameComponent(source, target, speed))) {
+			return Vector.INVALID;
+		}
+		if (!field.matches(target, speed, adjacentGoal)) {
+			field.retarget(target, speed, adjacentGoal);
+			rebuild(field, visitCondition);
+		} else if (field != lastPinnedField && stepClock - field.getBuiltAt() >= FIELD_REBUILD_INTERVAL) {
+			rebuild(field, visitCondition);
+		}
+		lastPinnedField = field;
+		if (field.isGoal(source)) {
+			return Vector.INVALID;
+		}
+
+		int dir = field.descend(source, false, visitCondition);
+		if (incrementalRadius > 0 && isStale(field, source, dir, visitCondition)) {
+			field.repair(source, incrementalRadius, visitCondition);
+			dir = field.descend(source, false, visitCondition);
+		}
+		if (needsRebuild(field, source, dir, visitCondition)) {
+			rebuild(field, visitCondition);
+			dir = field.descend(source, false, visitCondition);
+		}
+		if (dir != Vector.INVALID && field.getDistance(Vector.add(source, dir)) == DistanceField.UNREACHABLE) {
+			return Vector.INVALID;
+		}
+		return dir;
+	}
+
+	/**
+	 * Whether rebuilding a field could give a better step: the best free step is worse than the one
+	 * it was built with, and the field may be out of date somewhere
+	 * Repairs only keep the cells around the robot up to date, so a cell that was blocked when the field was built
+	 * stays a wall after it drops out of view, and only a rebuild clears it; we allow one every few steps
+	 * Without repairs, the field is exactly as it was built, so it can only be out of date if some cell has changed
+	 */
+	private boolean needsRebuild(DistanceField field, int source, int dir, LocationPredicate visitCondition) {
+		if (!isStale(field, source, dir, visitCondition)) {
+			return false;
+		}
+		if (stepClock - field.getBuiltAt() >= FIELD_REBUILD_INTERVAL) {
+			return true;
+		}
+		return incrementalRadius == 0 &&
+			field.hasChangedAround(source, 2*MyRobot.boardSize*MyRobot.boardSize, visitCondition);
+	}
+
+	private void rebuild(DistanceField field, LocationPredicate visitCondition) {
+		field.build(visitCondition);
+		field.markBuilt(stepClock);
+	}
+
+	/**
+	 * Whether the best free step is worse than the best step the field was built with
+	 */
+	private static boolean isStale(DistanceField field, int source, int dir, LocationPredicate visitCondition) {
+		int staticDir = field.descend(source, true, visitCondition);
+		return dir == Vector.INVALID || staticDir == Vector.INVALID ||
+			field.getDistance(Vector.add(source, dir)) > field.getDistance(Vector.add(source, staticDir));
+	}
 }
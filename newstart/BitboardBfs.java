@@ -0,0 +1,272 @@
+package bc19;
+
+/**
+ * A Bfs engine that works on whole rows of the board at once
+ * Each row is a bitboard split across two ints, since the transpiler turns longs into doubles
+ * and then bitwise operations on them quietly break
+ * Only supports boards up to 64 wide, which is the maximum allowed
+ */
+class BitboardBfs {
+
+	private final int size;
+
+	// Static terrain and dynamic occupancy, as (lo, hi) pairs of words per row
+	private int[] passLo;
+	private int[] passHi;
+	private int[] occLo;
+	private int[] occHi;
+
+	private int[] visitedLo;
+	private int[] visitedHi;
+	private int[] frontierLo;
+	private int[] frontierHi;
+	private int[] prevLo;
+	private int[] prevHi;
+	private int[] nextLo;
+	private int[] nextHi;
+
+	// Horizontal dilations of the frontier, by 0 to 3 columns
+	private int[][] dilatedLo;
+	private int[][] dilatedHi;
+
+	// The furthest horizontal displacement allowed for each vertical displacement
+	private int[] reach;
+
+	private int distance;
+	private int firstStep;
+
+	BitboardBfs(boolean[][] map) {
+		size = MyRobot.boardSize;
+
+		passLo = new int[size];
+		passHi = new int[size];
+		occLo = new int[size];
+		occHi = new int[size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (map[y][x]) {
+					if (x < 32) {
+						passLo[y] |= 1 << x;
+					} else {
+						passHi[y] |= 1 << (x-32);
+					}
+				}
+			}
+		}
+
+		visitedLo = new int[size];
+		visitedHi = new int[size];
+		frontierLo = new int[size];
+		frontierHi = new int[size];
+		prevLo = new int[size];
+		prevHi = new int[size];
+		nextLo = new int[size];
+		nextHi = new int[size];
+		dilatedLo = new int[4][size];
+		dilatedHi = new int[4][size];
+		reach = new int[4];
+
+		distance = -1;
+		firstStep = Vector.INVALID;
+	}
+
+	void clearOccupancy() {
+		for (int y = 0; y < size; y++) {
+			occLo[y] = 0;
+			occHi[y] = 0;
+		}
+	}
+
+	void addOccupied(int location) {
+		int x = Vector.getX(location), y = Vector.getY(location);
+		if (x < 32) {
+			occLo[y] |= 1 << x;
+		} else {
+			occHi[y] |= 1 << (x-32);
+		}
+	}
+
+	private static boolean testBit(int[] lo, int[] hi, int location) {
+		int x = Vector.getX(location), y = Vector.getY(location);
+		if (x < 32) {
+			return ((lo[y] >>> x) & 1) != 0;
+		}
+		return ((hi[y] >>> (x-32)) & 1) != 0;
+	}
+
+	private static void setBit(int[] lo, int[] hi, int location) {
+		int x = Vector.getX(location), y = Vector.getY(location);
+		if (x < 32) {
+			lo[y] |= 1 << x;
+		} else {
+			hi[y] |= 1 << (x-32);
+		}
+	}
+
+	/**
+	 * Spreads every row of the frontier sideways by up to 3 columns
+	 * Shifting left moves bits towards larger x, and bits carry between the two words of a row
+	 */
+	private void dilateRow(int y) {
+		int lo = frontierLo[y], hi = frontierHi[y];
+		dilatedLo[0][y] = lo;
+		dilatedHi[0][y] = hi;
+		for (int k = 1; k <= 3; k++) {
+			int lLo = lo << k;
+			int lHi = (hi << k) | (lo >>> (32-k));
+			int rLo = (lo >>> k) | (hi << (32-k));
+			int rHi = hi >>> k;
+			dilatedLo[k][y] = dilatedLo[k-1][y] | lLo | rLo;
+			dilatedHi[k][y] = dilatedHi[k-1][y] | lHi | rHi;
+		}
+	}
+
+	/**
+	 * Runs a reverse Bfs from the target, one whole layer of the board per iteration
+	 * @param source The location of the robot, serialised by the Vector class
+	 * @param target The location to path towards
+	 * @param speed The maximum movement per step, at most 9
+	 * @return Whether the target is reachable
+	 */
+	boolean solve(int source, int target, int speed) {
+		distance = -1;
+		firstStep = Vector.INVALID;
+		if (source == Vector.INVALID || target == Vector.INVALID) {
+			return false;
+		}
+		if (source == target) {
+			distance = 0;
+			return true;
+		}
+
+		for (int dy = 0; dy <= 3; dy++) {
+			reach[dy] = -1;
+			for (int dx = 0; dx <= 3; dx++) {
+				if (dx*dx + dy*dy <= speed) {
+					reach[dy] = dx;
+				}
+			}
+		}
+
+		for (int y = 0; y < size; y++) {
+			visitedLo[y] = 0;
+			visitedHi[y] = 0;
+			frontierLo[y] = 0;
+			frontierHi[y] = 0;
+		}
+		setBit(frontierLo, frontierHi, target);
+		setBit(visitedLo, visitedHi, target);
+		int minY = Vector.getY(target), maxY = minY;
+
+		// The robot's own square is occupied by itself, so always let the search land there
+		int sx = Vector.getX(source), sy = Vector.getY(source);
+		int sourceLo = (sx < 32) ? (1 << sx) : 0;
+		int sourceHi = (sx < 32) ? 0 : (1 << (sx-32));
+
+		int layer = 0;
+		while (minY <= maxY) {
+			layer++;
+			for (int y = Math.max(0, minY-3); y <= Math.min(size-1, maxY+3); y++) {
+				prevLo[y] = frontierLo[y];
+				prevHi[y] = frontierHi[y];
+			}
+			for (int y = minY; y <= maxY; y++) {
+				dilateRow(y);
+			}
+
+			int newMinY = size, newMaxY = -1;
+			for (int y = Math.max(0, minY-3); y <= Math.min(size-1, maxY+3); y++) {
+				int lo = 0, hi = 0;
+				for (int dy = -3; dy <= 3; dy++) {
+					int k = reach[Math.abs(dy)];
+					int from = y+dy;
+					if (k >= 0 && from >= minY && from <= maxY) {
+						lo |= dilatedLo[k][from];
+						hi |= dilatedHi[k][from];
+					}
+				}
+				int allowLo = passLo[y] & ~occLo[y];
+				int allowHi = passHi[y] & ~occHi[y];
+				if (y == sy) {
+					allowLo |= sourceLo;
+					allowHi |= sourceHi;
+				}
+				nextLo[y] = lo & allowLo & ~visitedLo[y];
+				nextHi[y] = hi & allowHi & ~visitedHi[y];
+				if ((nextLo[y] | nextHi[y]) != 0) {
+					newMinY = Math.min(newMinY, y);
+					newMaxY = Math.max(newMaxY, y);
+				}
+			}
+
+			for (int y = Math.max(0, minY-3); y <= Math.min(size-1, maxY+3); y++) {
+				frontierLo[y] = nextLo[y];
+				frontierHi[y] = nextHi[y];
+				visitedLo[y] |= nextLo[y];
+				visitedHi[y] |= nextHi[y];
+			}
+
+			if (testBit(frontierLo, frontierHi, source)) {
+				distance = layer;
+				pickFirstStep(source, speed);
+				return true;
+			}
+			minY = newMinY;
+			maxY = newMaxY;
+		}
+		return false;
+	}
+
+	/**
+	 * The previous frontier is exactly the set of squares one step closer to the target
+	 * Ties are broken in favour of the cheapest move
+	 */
+	private void pickFirstStep(int source, int speed) {
+		for (int msk = MoveTable.movesFrom(source, speed); msk != 0; msk ^= (msk&-msk)) {
+			int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+			int v = source + dir;
+			if (testBit(prevLo, prevHi, v) &&
+				(firstStep == Vector.INVALID || Vector.magnitude(dir) < Vector.magnitude(firstStep))) {
+
+				firstStep = dir;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of moves from the source to the target in the last solve, or -1 if unreachable
+	 */
+	int getDistance() {
+		return distance;
+	}
+
+	/**
+	 * @return The first move of a shortest route in the last solve, or Vector.INVALID if there is none
+	 */
+	int getFirstStep() {
+		return firstStep;
+	}
+
+	/**
+	 * Times this engine against the masked-direction Bfs on the same query
+	 * @return A line suitable for logging
+	 */
+	String benchmark(BfsSolver solver, int source, int target, int speed,
+			LocationPredicate visitCondition, int repetitions) {
+
+		long startTime = System.currentTimeMillis();
+		for (int i = 0; i < repetitions; i++) {
+			solve(source, target, speed);
+		}
+		long bitboardTime = System.currentTimeMillis() - startTime;
+
+		startTime = System.currentTimeMillis();
+		for (int i = 0; i < repetitions; i++) {
+			solver.solve(source, speed, speed, (location) -> { return location == target; }, visitCondition);
+		}
+		long maskedTime = System.currentTimeMillis() - startTime;
+
+		return "Bfs benchmark over " + repetitions + " runs: bitboard " + bitboardTime + "ms (distance " + distance +
+			"), masked-direction " + maskedTime + "ms";
+	}
+}
@@ -0,0 +1,102 @@
+package bc19;
+
+/**
+ * Works out how far a radio broadcast has to reach
+ * The farthest passable square in each row is one of the row's two ends, so the whole board can be
+ * covered by looking at those ends alone, and the answer is remembered for the last place it was asked about
+ * Broadcasts meant for a known audience only need to reach the farthest recipient, which usually costs far less fuel
+ */
+class BroadcastPlanner {
+
+	private static final int EMPTY_ROW = -1;
+
+	// How many squares a recipient may have strayed from where we think it is
+	private final int recipientSlack;
+
+	private int[] rowMin;
+	private int[] rowMax;
+
+	private int cachedOrigin;
+	private int cachedRadiusSquared;
+
+	private int audienceOrigin;
+	private int audienceRadiusSquared;
+	private boolean audienceUnknown;
+
+	/**
+	 * @param map The passable terrain
+	 * @param recipientSlack How far a recipient may have strayed from where we think it is, usually one move of the fastest unit
+	 */
+	BroadcastPlanner(boolean[][] map, int recipientSlack) {
+		this.recipientSlack = recipientSlack;
+		rowMin = new int[MyRobot.boardSize];
+		rowMax = new int[MyRobot.boardSize];
+		for (int y = 0; y < MyRobot.boardSize; y++) {
+			rowMin[y] = EMPTY_ROW;
+			rowMax[y] = EMPTY_ROW;
+			for (int x = 0; x < MyRobot.boardSize; x++) {
+				if (map[y][x]) {
+					if (rowMin[y] == EMPTY_ROW) {
+						rowMin[y] = x;
+					}
+					rowMax[y] = x;
+				}
+			}
+		}
+		cachedOrigin = Vector.INVALID;
+		cachedRadiusSquared = 0;
+	}
+
+	/**
+	 * @return The smallest radius that reaches every passable square on the board from the origin
+	 */
+	int fullBoardRadiusSquared(int origin) {
+		if (origin != cachedOrigin) {
+			int ox = Vector.getX(origin), oy = Vector.getY(origin);
+			int result = 0;
+			for (int y = 0; y < MyRobot.boardSize; y++) {
+				if (rowMin[y] == EMPTY_ROW) {
+					continue;
+				}
+				int dx = Math.max(Math.abs(rowMin[y] - ox), Math.abs(rowMax[y] - ox));
+				result = Math.max(result, dx*dx + (y-oy)*(y-oy));
+			}
+			cachedOrigin = origin;
+			cachedRadiusSquared = result;
+		}
+		return cachedRadiusSquared;
+	}
+
+	/**
+	 * Starts working out the radius needed to reach a set of recipients
+	 */
+	void beginAudience(int origin) {
+		audienceOrigin = origin;
+		audienceRadiusSquared = 0;
+		audienceUnknown = false;
+	}
+
+	/**
+	 * @param location Where a recipient is thought to be, or Vector.INVALID if we have no idea
+	 */
+	void addRecipient(int location) {
+		if (location == Vector.INVALID) {
+			audienceUnknown = true;
+			return;
+		}
+		audienceRadiusSquared = Math.max(audienceRadiusSquared, Vector.distanceSquared(audienceOrigin, location));
+	}
+
+	/**
+	 * @return The radius that reaches every recipient added so far, allowing for some slack,
+	 * and never more than the whole board
+	 */
+	int audienceRadiusSquared() {
+		int full = fullBoardRadiusSquared(audienceOrigin);
+		if (audienceUnknown) {
+			return full;
+		}
+		int radius = (int) Math.ceil(Math.sqrt(audienceRadiusSquared)) + recipientSlack;
+		return Math.min(full, radius*radius);
+	}
+}
@@ -0,0 +1,369 @@
+package bc19;
+
+/**
+ * A reverse Bfs distance field (aka a flow field) rooted at a single target
+ * Once built, any robot can read its next step towards the target from its neighbours
+ */
+class DistanceField {
+
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private int target;
+	private int speed;
+	private boolean adjacentGoal;
+	private int lastUsed;
+	private int builtAt;
+
+	private int[][] dist;
+	private boolean[][] open;
+	private boolean[][] closed;
+	private DankQueue<Integer> q;
+
+	// Scratch space for incremental repairs
+	private int[][] affectedRun;
+	private int[][] queuedRun;
+	private int repairRun;
+	private int[] changed;
+	private int[] ordered;
+	private DankQueue<Integer> keys;
+
+	DistanceField() {
+		target = Vector.INVALID;
+		speed = 0;
+		adjacentGoal = false;
+		lastUsed = 0;
+		builtAt = 0;
+
+		dist = new int[MyRobot.boardSize][MyRobot.boardSize];
+		open = new boolean[MyRobot.boardSize][MyRobot.boardSize];
+		closed = new boolean[MyRobot.boardSize][MyRobot.boardSize];
+		q = new DankQueue<>(2*MyRobot.boardSize*MyRobot.boardSize);
+
+		affectedRun = new int[MyRobot.boardSize][MyRobot.boardSize];
+		queuedRun = new int[MyRobot.boardSize][MyRobot.boardSize];
+		repairRun = 0;
+		changed = new int[MyRobot.boardSize*MyRobot.boardSize];
+		ordered = new int[MyRobot.boardSize*MyRobot.boardSize];
+		keys = new DankQueue<>(2*MyRobot.boardSize*MyRobot.boardSize);
+	}
+
+	/**
+	 * Points this field at a new target, discarding the previous distances
+	 * @param newTarget The location to path towards, serialised by the Vector class
+	 * @param newSpeed The maximum movement per step
+	 * @param newAdjacentGoal Whether standing next to the target is enough, e.g. for structures
+	 */
+	void retarget(int newTarget, int newSpeed, boolean newAdjacentGoal) {
+		target = newTarget;
+		speed = newSpeed;
+		adjacentGoal = newAdjacentGoal;
+	}
+
+	boolean matches(int otherTarget, int otherSpeed, boolean otherAdjacentGoal) {
+		return target == otherTarget && speed == otherSpeed && adjacentGoal == otherAdjacentGoal;
+	}
+
+	int getTarget() {
+		return target;
+	}
+
+	int getLastUsed() {
+		return lastUsed;
+	}
+
+	void touch(int clock) {
+		lastUsed = clock;
+	}
+
+	int getBuiltAt() {
+		return builtAt;
+	}
+
+	void markBuilt(int clock) {
+		builtAt = clock;
+	}
+
+	boolean isGoal(int location) {
+		if (adjacentGoal) {
+			return Vector.isAdjacent(location, target);
+		}
+		return location == target;
+	}
+
+	int getDistance(int location) {
+		if (location == Vector.INVALID) {
+			return UNREACHABLE;
+		}
+		return Vector.get(location, dist);
+	}
+
+	/**
+	 * Floods outwards from the target
+	 * Moves are symmetric, so the reverse search uses the same move set as the robot
+	 * @param visitCondition Which states may be walked through
+	 */
+	void build(LocationPredicate visitCondition) {
+		for (int i = 0; i < MyRobot.boardSize; i++) for (int j = 0; j < MyRobot.boardSize; j++) {
+			dist[i][j] = UNREACHABLE;
+			open[i][j] = false;
+			closed[i][j] = false;
+		}
+		q.clear();
+
+		if (adjacentGoal) {
+			for (int msk = MoveTable.movesFrom(target, 2); msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = target + dir;
+				if (visitCondition.test(v)) {
+					Vector.set(v, dist, 0);
+					Vector.set(v, open, true);
+					q.add(v);
+				} else {
+					Vector.set(v, closed, true);
+				}
+			}
+		} else {
+			Vector.set(target, dist, 0);
+			Vector.set(target, open, true);
+			q.add(target);
+		}
+
+		while (!q.isEmpty()) {
+			int uLoc = q.poll();
+			int ud = Vector.get(uLoc, dist);
+			for (int msk = MoveTable.movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, dist) == UNREACHABLE) {
+					if (visitCondition.test(v)) {
+						Vector.set(v, dist, ud+1);
+						Vector.set(v, open, true);
+						q.add(v);
+					} else {
+						Vector.set(v, closed, true);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether any cell the field has looked at around a location is no longer as it was when looked at
+	 * Cells the field never reached can't matter until one of their neighbours changes, so they are skipped
+	 * Repairs bring the cells they look at up to date, so this only says anything about cells outside the repairs
+	 * @param radiusSquared How far around the centre to look, usually the vision radius
+	 */
+	boolean hasChangedAround(int centre, int radiusSquared, LocationPredicate visitCondition) {
+		int maxDispl = (int) Math.ceil(Math.sqrt(radiusSquared));
+		for (int i = -maxDispl; i <= maxDispl; i++) for (int j = -maxDispl; j <= maxDispl; j++) {
+			int dir = Vector.makeDirection(i, j);
+			int v = Vector.add(centre, dir);
+			if (v == Vector.INVALID || v == centre || Vector.magnitude(dir) > radiusSquared) {
+				continue;
+			}
+			if (!adjacentGoal && v == target) {
+				continue;
+			}
+			if ((Vector.get(v, open) || Vector.get(v, closed)) && visitCondition.test(v) != Vector.get(v, open)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isSeed(int location) {
+		return adjacentGoal ? Vector.isAdjacent(location, target) : location == target;
+	}
+
+	/**
+	 * Brings the field up to date with the cells around a location, without rebuilding it
+	 * Works like LPA* on a unit-cost graph: cells whose shortest route ran through a newly blocked cell
+	 * are invalidated, and then distances are re-propagated outwards from every changed cell
+	 * @param centre Usually the robot's own location, which is never treated as blocked
+	 * @param radiusSquared How far around the centre to look for changes, usually the vision radius
+	 * @param visitCondition Which states may be walked through
+	 */
+	void repair(int centre, int radiusSquared, LocationPredicate visitCondition) {
+		repairRun++;
+
+		// Find the cells whose passability differs from when we last looked at them
+		int numBlocked = 0;
+		int numOpened = 0;
+		int maxDispl = (int) Math.ceil(Math.sqrt(radiusSquared));
+		for (int i = -maxDispl; i <= maxDispl; i++) for (int j = -maxDispl; j <= maxDispl; j++) {
+			int dir = Vector.makeDirection(i, j);
+			int v = Vector.add(centre, dir);
+			if (v == Vector.INVALID || v == centre || Vector.magnitude(dir) > radiusSquared) {
+				continue;
+			}
+			if (!adjacentGoal && v == target) {
+				continue;
+			}
+			boolean nowOpen = visitCondition.test(v);
+			if (nowOpen != Vector.get(v, open)) {
+				Vector.set(v, open, nowOpen);
+				Vector.set(v, closed, !nowOpen);
+				if (nowOpen) {
+					ordered[numOpened] = v;
+					numOpened++;
+				} else if (Vector.get(v, dist) != UNREACHABLE) {
+					changed[numBlocked] = v;
+					numBlocked++;
+				}
+			}
+		}
+		if (numBlocked == 0 && numOpened == 0) {
+			return;
+		}
+
+		// Opened cells are stashed at the back of the buffer while we work out what was affected
+		for (int i = 0; i < numOpened; i++) {
+			changed[changed.length-1-i] = ordered[i];
+		}
+
+		// Phase one: in increasing order of old distance, invalidate cells that lost every route
+		sortByDistance(changed, numBlocked);
+		int numAffected = 0;
+		int head = 0;
+		q.clear();
+		while (head < numBlocked || !q.isEmpty()) {
+			int uLoc;
+			if (q.isEmpty() || (head < numBlocked && Vector.get(changed[head], dist) <= Vector.get(q.peek(), dist))) {
+				uLoc = changed[head];
+				head++;
+			} else {
+				uLoc = q.poll();
+			}
+			if (Vector.get(uLoc, affectedRun) == repairRun) {
+				continue;
+			}
+			int ud = Vector.get(uLoc, dist);
+			if (Vector.get(uLoc, open) && (ud == 0 || hasSupport(uLoc))) {
+				continue;
+			}
+			Vector.set(uLoc, affectedRun, repairRun);
+			ordered[numAffected] = uLoc;
+			numAffected++;
+			for (int msk = MoveTable.movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, open) && Vector.get(v, dist) == ud+1 &&
+					Vector.get(v, queuedRun) != repairRun) {
+
+					Vector.set(v, queuedRun, repairRun);
+					q.add(v);
+				}
+			}
+		}
+		for (int i = 0; i < numAffected; i++) {
+			Vector.set(ordered[i], dist, UNREACHABLE);
+		}
+
+		// Phase two: work out fresh tentative distances for every changed cell
+		int numSeeds = 0;
+		for (int i = 0; i < numAffected + numOpened; i++) {
+			int uLoc = (i < numAffected) ? ordered[i] : changed[changed.length-1-i+numAffected];
+			if (!Vector.get(uLoc, open)) {
+				continue;
+			}
+			int tentative = isSeed(uLoc) ? 0 : UNREACHABLE;
+			for (int msk = MoveTable.movesFrom(uLoc, speed); tentative > 0 && msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, open) && Vector.get(v, dist) != UNREACHABLE) {
+					tentative = Math.min(tentative, Vector.get(v, dist)+1);
+				}
+			}
+			if (tentative < Vector.get(uLoc, dist)) {
+				Vector.set(uLoc, dist, tentative);
+				changed[numSeeds] = uLoc;
+				numSeeds++;
+			}
+		}
+
+		// Phase three: a Bfs seeded at several different distances, merged in increasing order
+		sortByDistance(changed, numSeeds);
+		head = 0;
+		q.clear(); keys.clear();
+		while (head < numSeeds || !q.isEmpty()) {
+			int uLoc;
+			int uKey;
+			if (q.isEmpty() || (head < numSeeds && Vector.get(changed[head], dist) <= keys.peek())) {
+				uLoc = changed[head];
+				uKey = Vector.get(uLoc, dist);
+				head++;
+			} else {
+				uLoc = q.poll();
+				uKey = keys.poll();
+			}
+			if (uKey != Vector.get(uLoc, dist)) {
+				continue;
+			}
+			for (int msk = MoveTable.movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, open) && uKey+1 < Vector.get(v, dist)) {
+					Vector.set(v, dist, uKey+1);
+					q.add(v);
+					keys.add(uKey+1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether a cell still has an unaffected neighbour one step closer to the target
+	 */
+	private boolean hasSupport(int location) {
+		int want = Vector.get(location, dist) - 1;
+		for (int msk = MoveTable.movesFrom(location, speed); msk != 0; msk ^= (msk&-msk)) {
+			int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+			int v = location + dir;
+			if (Vector.get(v, open) && Vector.get(v, dist) == want &&
+				Vector.get(v, affectedRun) != repairRun) {
+
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Insertion sort, since the lists of changed cells are tiny
+	 */
+	private void sortByDistance(int[] arr, int len) {
+		for (int i = 1; i < len; i++) {
+			int cur = arr[i];
+			int curDist = Vector.get(cur, dist);
+			int j = i-1;
+			while (j >= 0 && Vector.get(arr[j], dist) > curDist) {
+				arr[j+1] = arr[j];
+				j--;
+			}
+			arr[j+1] = cur;
+		}
+	}
+
+	/**
+	 * Reads the best move out of the field
+	 * Ties between equally short routes are broken in favour of the cheapest move
+	 * @param ignoreVisitCondition Whether to look at the field as it was built, ignoring current occupancy
+	 * @return The direction to move in, or Vector.INVALID if no neighbour is closer to the target
+	 */
+	int descend(int source, boolean ignoreVisitCondition, LocationPredicate visitCondition) {
+		int bestDir = Vector.INVALID;
+		int bestDist = UNREACHABLE;
+		for (int msk = MoveTable.movesFrom(source, speed); msk != 0; msk ^= (msk&-msk)) {
+			int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+			int v = source + dir;
+			int vd = Vector.get(v, dist);
+			if (vd < bestDist || (vd == bestDist && vd != UNREACHABLE && Vector.magnitude(dir) < Vector.magnitude(bestDir))) {
+				if (ignoreVisitCondition || visitCondition.test(v)) {
+					bestDir = dir;
+					bestDist = vd;
+				}
+			}
+		}
+		return bestDir;
+	}
+}
@@ -0,0 +1,106 @@
+package bc19;
+
+/**
+ * Remembers enemies for a few turns after they drop out of sight
+ * Everything is indexed by robot id, with a dense list of the ids currently remembered
+ * so that iterating and forgetting never touch the rest of the id space, and nothing is allocated per turn
+ */
+class EnemyTracker {
+
+	private static final int NOT_TRACKED = -1;
+
+	private final int memoryTurns;
+
+	private int[] lastLoc;
+	private int[] unitType;
+	private int[] lastSeen;
+	private int[] activeIndex;
+
+	private int[] active;
+	private int numActive;
+
+	/**
+	 * @param maxId The largest robot id there can be
+	 * @param memoryTurns How many turns to remember an enemy after it was last seen
+	 */
+	EnemyTracker(int maxId, int memoryTurns) {
+		this.memoryTurns = memoryTurns;
+		lastLoc = new int[maxId+1];
+		unitType = new int[maxId+1];
+		lastSeen = new int[maxId+1];
+		activeIndex = new int[maxId+1];
+		for (int i = 0; i <= maxId; i++) {
+			activeIndex[i] = NOT_TRACKED;
+		}
+		active = new int[maxId+1];
+		numActive = 0;
+	}
+
+	void observe(int id, int location, int unit, int turn) {
+		if (activeIndex[id] == NOT_TRACKED) {
+			activeIndex[id] = numActive;
+			active[numActive] = id;
+			numActive++;
+		}
+		lastLoc[id] = location;
+		unitType[id] = unit;
+		lastSeen[id] = turn;
+	}
+
+	void forget(int id) {
+		int idx = activeIndex[id];
+		if (idx == NOT_TRACKED) {
+			return;
+		}
+		numActive--;
+		active[idx] = active[numActive];
+		activeIndex[active[idx]] = idx;
+		activeIndex[id] = NOT_TRACKED;
+	}
+
+	/**
+	 * Drops every enemy that hasn't been seen for longer than the memory lasts
+	 */
+	void expire(int turn) {
+		for (int i = numActive-1; i >= 0; i--) {
+			if (turn - lastSeen[active[i]] > memoryTurns) {
+				forget(active[i]);
+			}
+		}
+	}
+
+	int size() {
+		return numActive;
+	}
+
+	/**
+	 * @return The id of the i-th remembered enemy, in no particular order
+	 */
+	int get(int i) {
+		return active[i];
+	}
+
+	int getLastLocation(int id) {
+		return lastLoc[id];
+	}
+
+	int getUnitType(int id) {
+		return unitType[id];
+	}
+
+	int getLastSeen(int id) {
+		return lastSeen[id];
+	}
+
+	/**
+	 * How much of an enemy's threat still stands, from 1 on the turn it was seen down to 0 once it is forgotten
+	 * @return The numerator of that fraction, over memoryTurns+1
+	 */
+	int decayWeight(int id, int turn) {
+		return Math.max(0, memoryTurns+1 - (turn - lastSeen[id]));
+	}
+
+	int decayScale() {
+		return memoryTurns+1;
+	}
+}
@@ -0,0 +1,109 @@
+package bc19;
+
+/**
+ * A binary min-heap over compressed map locations, keyed by ints
+ * Everything is preallocated, and each location sits in the heap at most once,
+ * so lowering a key moves it in place instead of pushing a duplicate
+ */
+class IntMinHeap {
+
+	private static final int NOT_IN_HEAP = -1;
+
+	private int[] heap;
+	private int[] key;
+	private int[] pos;
+	private int size;
+
+	IntMinHeap(int capacity) {
+		heap = new int[capacity];
+		key = new int[capacity];
+		pos = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			pos[i] = NOT_IN_HEAP;
+		}
+		size = 0;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			pos[heap[i]] = NOT_IN_HEAP;
+		}
+		size = 0;
+	}
+
+	boolean contains(int item) {
+		return pos[item] != NOT_IN_HEAP;
+	}
+
+	int peekKey() {
+		return key[heap[0]];
+	}
+
+	/**
+	 * Inserts an item, or lowers its key if it is already in the heap with a higher key
+	 */
+	void push(int item, int itemKey) {
+		if (pos[item] == NOT_IN_HEAP) {
+			heap[size] = item;
+			pos[item] = size;
+			key[item] = itemKey;
+			size++;
+			siftUp(size-1);
+		} else if (itemKey < key[item]) {
+			key[item] = itemKey;
+			siftUp(pos[item]);
+		}
+	}
+
+	int poll() {
+		int top = heap[0];
+		size--;
+		pos[top] = NOT_IN_HEAP;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int idx) {
+		int item = heap[idx];
+		while (idx > 0) {
+			int parent = (idx-1) >> 1;
+			if (key[heap[parent]] <= key[item]) {
+				break;
+			}
+			heap[idx] = heap[parent];
+			pos[heap[idx]] = idx;
+			idx = parent;
+		}
+		heap[idx] = item;
+		pos[item] = idx;
+	}
+
+	private void siftDown(int idx) {
+		int item = heap[idx];
+		while (true) {
+			int child = 2*idx+1;
+			if (child >= size) {
+				break;
+			}
+			if (child+1 < size && key[heap[child+1]] < key[heap[child]]) {
+				child++;
+			}
+			if (key[heap[child]] >= key[item]) {
+				break;
+			}
+			heap[idx] = heap[child];
+			pos[heap[idx]] = idx;
+			idx = child;
+		}
+		heap[idx] = item;
+		pos[item] = idx;
+	}
+}
@@ -0,0 +1,10 @@
+package bc19;
+
+/**
+ * A small non-negative penalty for entering a location, serialised by the Vector class
+ * Used to weight searches by things like danger, on top of the one turn that every move costs
+ */
+interface LocationCost {
+
+	int cost(int location);
+}
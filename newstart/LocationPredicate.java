@@ -0,0 +1,11 @@
+package bc19;
+
+/**
+ * A yes-or-no question about a location, serialised by the Vector class
+ * Takes a primitive int, unlike java.util.function.Function<Integer, Boolean>,
+ * so nothing gets boxed in the inner loop of a search
+ */
+interface LocationPredicate {
+
+	boolean test(int location);
+}
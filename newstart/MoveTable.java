@@ -0,0 +1,148 @@
+package bc19;
+
+/**
+ * Per-square tables of which moves stay on the map and land on passable terrain
+ * Bit i of each mask stands for BfsSolver.allMoves[i], which covers every move up to r^2 = 9,
+ * so the tables serve speeds 2, 4 and 9 alike: just AND with the mask for the speed
+ * Built once from the map, so that searches only have to check dynamic occupancy
+ */
+class MoveTable {
+
+	/**
+	 * Prevent this class from being instantiated
+	 */
+	private MoveTable() { }
+
+	static final int NO_COMPONENT = -1;
+
+	private static boolean[][] terrain;
+	private static int[][] onMapMoves;
+	private static int[][] passableMoves;
+	private static int[] speedMasks;
+
+	// Connected components of the static terrain, labelled per speed when first asked for
+	private static int[][][] components;
+
+	/**
+	 * Count-trailing-zeros via a lookup modulo 37, like in BfsSolver, but good for all 31 usable bits
+	 */
+	private static int[] ctzLookup;
+
+	static void initialise(boolean[][] map) {
+		terrain = map;
+		components = new int[10][][];
+
+		ctzLookup = new int[37];
+		for (int k = 0; k < 31; k++) {
+			ctzLookup[(1 << k) % 37] = k;
+		}
+
+		speedMasks = new int[10];
+		for (int speed = 0; speed < 10; speed++) {
+			for (int i = 0; i < BfsSolver.allMoves.length; i++) {
+				if (Vector.magnitude(BfsSolver.allMoves[i]) <= speed) {
+					speedMasks[speed] |= 1 << i;
+				}
+			}
+		}
+
+		onMapMoves = new int[MyRobot.boardSize][MyRobot.boardSize];
+		passableMoves = new int[MyRobot.boardSize][MyRobot.boardSize];
+		for (int x = 0; x < MyRobot.boardSize; x++) for (int y = 0; y < MyRobot.boardSize; y++) {
+			int loc = Vector.makeMapLocation(x, y);
+			for (int i = 0; i < BfsSolver.allMoves.length; i++) {
+				int v = Vector.add(loc, BfsSolver.allMoves[i]);
+				if (v != Vector.INVALID) {
+					onMapMoves[y][x] |= 1 << i;
+					if (Vector.get(v, map)) {
+						passableMoves[y][x] |= 1 << i;
+					}
+				}
+			}
+		}
+	}
+
+	static int lowestBit(int mask) {
+		return ctzLookup[(mask & -mask) % 37];
+	}
+
+	static int speedMask(int speed) {
+		return speedMasks[Math.max(0, Math.min(9, speed))];
+	}
+
+	/**
+	 * @return The moves from a location that land on the map, as a mask over BfsSolver.allMoves
+	 */
+	static int onMapMovesFrom(int location) {
+		return Vector.get(location, onMapMoves);
+	}
+
+	/**
+	 * @return The moves of at most the given speed that land on passable terrain, as a mask over BfsSolver.allMoves
+	 * Since these land on the map, location + BfsSolver.allMoves[i] needs no bounds check
+	 */
+	static int movesFrom(int location, int speed) {
+		return Vector.get(location, passableMoves) & speedMask(speed);
+	}
+
+	/**
+	 * Floods the static terrain once, giving every square the label of the region it can reach at the given speed
+	 * Robots and structures are ignored, so a shared label only means a route might exist, but different labels
+	 * mean no route ever will
+	 */
+	static void labelComponents(int speed) {
+		speed = Math.max(0, Math.min(9, speed));
+		if (components[speed] != null) {
+			return;
+		}
+		int[][] label = new int[MyRobot.boardSize][MyRobot.boardSize];
+		for (int x = 0; x < MyRobot.boardSize; x++) for (int y = 0; y < MyRobot.boardSize; y++) {
+			label[y][x] = NO_COMPONENT;
+		}
+		int[] stack = new int[MyRobot.boardSize*MyRobot.boardSize];
+		int numComponents = 0;
+		for (int x = 0; x < MyRobot.boardSize; x++) for (int y = 0; y < MyRobot.boardSize; y++) {
+			if (!terrain[y][x] || label[y][x] != NO_COMPONENT) {
+				continue;
+			}
+			int top = 0;
+			stack[top] = Vector.makeMapLocation(x, y);
+			top++;
+			label[y][x] = numComponents;
+			while (top > 0) {
+				top--;
+				int uLoc = stack[top];
+				for (int msk = movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+					int v = uLoc + BfsSolver.allMoves[lowestBit(msk)];
+					if (Vector.get(v, label) == NO_COMPONENT) {
+						Vector.set(v, label, numComponents);
+						stack[top] = v;
+						top++;
+					}
+				}
+			}
+			numComponents++;
+		}
+		components[speed] = label;
+	}
+
+	/**
+	 * @return The label of the region a location belongs to at the given speed, or NO_COMPONENT for impassable squares
+	 */
+	static int componentOf(int location, int speed) {
+		if (location == Vector.INVALID) {
+			return NO_COMPONENT;
+		}
+		labelComponents(speed);
+		return Vector.get(location, components[Math.max(0, Math.min(9, speed))]);
+	}
+
+	/**
+	 * An O(1) check that rules out searches that could never succeed
+	 * @return Whether a robot of the given speed could ever walk between the two locations
+	 */
+	static boolean sameComponent(int locA, int locB, int speed) {
+		int component = componentOf(locA, speed);
+		return component != NO_COMPONENT && component == componentOf(locB, speed);
+	}
+}
@@ -32,9 +32,22 @@ public strictfp class MyRobot extends BCAbstractRobot {
 	private static final int NO_UNIT = -1;
 	private static final int ARMED_UNIT = 420;
 
+	// Debugging switches
+	private static final boolean BENCHMARK_BITBOARD_BFS = false;
+
 	// Dangerous squares
 	private int[][] mayBecomeAttacked;
 	private int[][] isAttacked;
+	private boolean armedEnemyVisible;
+	private boolean armedEnemyRemembered;
+	private ThreatMap threats;
+	private EnemyTracker enemies;
+	private BroadcastPlanner broadcastPlanner;
+	private static final int ENEMY_MEMORY_TURNS = 3;
+
+	// Offsets from an enemy of each unit type to the squares it threatens
+	private int[][] attackedStencil;
+	private int[][] mayBeAttackedStencil;
 
 	// Utilities
 	private BfsSolver myBfsSolver;
@@ -68,13 +81,25 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 	/** Initialisation function called on the robot's first turn */
 	private void initialise() {
+		MoveTable.initialise(map);
+		// Structures don't move, but they do care where their pilgrims can get to
+		MoveTable.labelComponents(isStructure(me.unit) ? SPECS.UNITS[SPECS.PILGRIM].SPEED : SPECS.UNITS[me.unit].SPEED);
 		myBfsSolver = new BfsSolver();
+		myBfsSolver.setIncrementalRepairRadius(SPECS.UNITS[me.unit].VISION_RADIUS);
 		communications = new EncryptedCommunicator();
 		rng = new SimpleRandom();
 		symmetryStatus = BoardSymmetryType.determineSymmetricOrientation(map, karboniteMap, fuelMap);
 
 		mayBecomeAttacked = new int[boardSize][boardSize];
 		isAttacked = new int[boardSize][boardSize];
+		buildAttackStencils();
+		threats = new ThreatMap();
+		enemies = new EnemyTracker(SPECS.MAX_ID, ENEMY_MEMORY_TURNS);
+		int fastestMove = 0;
+		for (int unit = 0; unit < SPECS.UNITS.length; unit++) {
+			fastestMove = Math.max(fastestMove, (int) Math.ceil(Math.sqrt(SPECS.UNITS[unit].SPEED)));
+		}
+		broadcastPlanner = new BroadcastPlanner(map, fastestMove);
 
 		if (me.unit == SPECS.CASTLE) {
 			mySpecificRobotController = new CastleController();
@@ -91,53 +116,151 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		} else {
 			log("Error: I do not know what I am");
 		}
+
+		if (BENCHMARK_BITBOARD_BFS) {
+			BitboardBfs engine = new BitboardBfs(map);
+			engine.clearOccupancy();
+			for (Robot r: visibleRobots) {
+				if (isVisible(r) && r.id != me.id) {
+					engine.addOccupied(Vector.makeMapLocation(r.x, r.y));
+				}
+			}
+			log(engine.benchmark(myBfsSolver, myLoc, Vector.opposite(myLoc, symmetryStatus), 4,
+				(location) -> { return isOccupiable(location); }, 20));
+		}
 	}
 
 	private void noteAttackedSquares() {
+		armedEnemyVisible = false;
+		armedEnemyRemembered = false;
+		threats.startTurn(me.turn);
 		for (Robot r: visibleRobots) {
 			if (isVisible(r) && r.team != me.team) {
 				int location = Vector.makeMapLocation(r.x, r.y);
+				enemies.observe(r.id, location, r.unit, me.turn);
 				if (isArmed(r.unit)) {
-					int maxDispl = (int) Math.ceil(Math.sqrt(SPECS.UNITS[r.unit].ATTACK_RADIUS[1]));
-					for (int i = -maxDispl; i <= maxDispl; i++) for (int j = -maxDispl; j <= maxDispl; j++) {
-						int dir = Vector.makeDirection(i, j);
-						int targetLoc = Vector.add(location, dir);
-						if (targetLoc != Vector.INVALID && Vector.magnitude(dir) <= SPECS.UNITS[r.unit].ATTACK_RADIUS[1]) {
-
-							boolean isDirectTarget = Vector.magnitude(dir) >= SPECS.UNITS[r.unit].ATTACK_RADIUS[0];
-
-							// Offset for being potentially attacked
-							int offset = -1;
-							if (r.unit == SPECS.CASTLE) {
-								offset = 0; // Castles don't move
-							} else if (r.unit == SPECS.CRUSADER) {
-								offset = 2; // Standard
-							} else if (r.unit == SPECS.PROPHET) {
-								offset = 0; // Prevent pilgrims from getting terrified
-							} else if (r.unit == SPECS.PREACHER) {
-								offset = 3; // AoE
-							}
-
-							for (int dx = -offset; dx <= offset; dx++) {
-								for (int dy = Math.abs(dx)-offset; dy <= offset-Math.abs(dx); dy++) {
-									int affectLoc = Vector.add(targetLoc, Vector.makeDirection(dx, dy));
-									if (affectLoc != Vector.INVALID) {
-										Vector.set(affectLoc, mayBecomeAttacked, me.turn);
-										if (isDirectTarget &&
-											Vector.distanceSquared(targetLoc, affectLoc) <= SPECS.UNITS[r.unit].DAMAGE_SPREAD) {
-
-											Vector.set(affectLoc, isAttacked, me.turn);
-										}
-									}
-								}
-							}
+					armedEnemyVisible = true;
+					for (int dir: mayBeAttackedStencil[r.unit]) {
+						int affectLoc = Vector.add(location, dir);
+						if (affectLoc != Vector.INVALID) {
+							Vector.set(affectLoc, mayBecomeAttacked, me.turn);
 						}
 					}
+					for (int dir: attackedStencil[r.unit]) {
+						int affectLoc = Vector.add(location, dir);
+						if (affectLoc != Vector.INVALID) {
+							Vector.set(affectLoc, isAttacked, me.turn);
+						}
+					}
+					threats.addThreat(location, SPECS.UNITS[r.unit].ATTACK_DAMAGE,
+						attackedStencil[r.unit], mayBeAttackedStencil[r.unit]);
 				} else {
 					Vector.set(location, isAttacked, me.turn);
 				}
 			}
 		}
+
+		// Enemies that have just dropped out of sight are probably still around, so fade them out gradually
+		// They only go into the threat map, since the attack stamps trigger retreats and spears on what we can see
+		enemies.expire(me.turn);
+		for (int i = enemies.size()-1; i >= 0; i--) {
+			int id = enemies.get(i);
+			int location = enemies.getLastLocation(id);
+			int occupant = Vector.get(location, visibleRobotMap);
+			if (enemies.getLastSeen(id) != me.turn && occupant != MAP_INVISIBLE && occupant != id) {
+				// We can see where it was and it isn't there, so it has died or moved off somewhere we can't follow
+				enemies.forget(id);
+			}
+		}
+		for (int i = 0; i < enemies.size(); i++) {
+			int id = enemies.get(i);
+			int unit = enemies.getUnitType(id);
+			if (enemies.getLastSeen(id) == me.turn || !isArmed(unit)) {
+				continue;
+			}
+			armedEnemyRemembered = true;
+			int location = enemies.getLastLocation(id);
+			threats.addPossibleThreat(location,
+				SPECS.UNITS[unit].ATTACK_DAMAGE * enemies.decayWeight(id, me.turn) / enemies.decayScale(),
+				mayBeAttackedStencil[unit]);
+		}
+	}
+
+	/**
+	 * How far an enemy's threat is spread out, in Manhattan distance, to allow for it moving first
+	 */
+	private int threatSpread(int unit) {
+		if (unit == SPECS.CASTLE) {
+			return 0; // Castles don't move
+		} else if (unit == SPECS.CRUSADER) {
+			return 2; // Standard
+		} else if (unit == SPECS.PROPHET) {
+			return 0; // Prevent pilgrims from getting terrified
+		} else if (unit == SPECS.PREACHER) {
+			return 3; // AoE
+		}
+		return -1;
+	}
+
+	/**
+	 * Works out, once per game, which squares around each armed unit type count as attacked or possibly attacked
+	 * Each stencil is a list of distinct offsets, so marking the squares around an enemy is one short loop
+	 */
+	private void buildAttackStencils() {
+		attackedStencil = new int[SPECS.UNITS.length][];
+		mayBeAttackedStencil = new int[SPECS.UNITS.length][];
+		for (int unit = 0; unit < SPECS.UNITS.length; unit++) {
+			if (!isArmed(unit)) {
+				attackedStencil[unit] = new int[0];
+				mayBeAttackedStencil[unit] = new int[0];
+				continue;
+			}
+			int minRadius = SPECS.UNITS[unit].ATTACK_RADIUS[0];
+			int maxRadius = SPECS.UNITS[unit].ATTACK_RADIUS[1];
+			int offset = threatSpread(unit);
+			int maxDispl = (int) Math.ceil(Math.sqrt(maxRadius));
+			int reach = maxDispl + Math.max(0, offset);
+			int width = 2*reach+1;
+			boolean[] attacked = new boolean[width*width];
+			boolean[] mayBeAttacked = new boolean[width*width];
+			for (int i = -maxDispl; i <= maxDispl; i++) for (int j = -maxDispl; j <= maxDispl; j++) {
+				int dir = Vector.makeDirection(i, j);
+				if (Vector.magnitude(dir) > maxRadius) {
+					continue;
+				}
+				boolean isDirectTarget = Vector.magnitude(dir) >= minRadius;
+				for (int dx = -offset; dx <= offset; dx++) {
+					for (int dy = Math.abs(dx)-offset; dy <= offset-Math.abs(dx); dy++) {
+						int idx = (j+dy+reach)*width + (i+dx+reach);
+						mayBeAttacked[idx] = true;
+						if (isDirectTarget && dx*dx + dy*dy <= SPECS.UNITS[unit].DAMAGE_SPREAD) {
+							attacked[idx] = true;
+						}
+					}
+				}
+			}
+			attackedStencil[unit] = collectOffsets(attacked, reach);
+			mayBeAttackedStencil[unit] = collectOffsets(mayBeAttacked, reach);
+		}
+	}
+
+	private static int[] collectOffsets(boolean[] marked, int reach) {
+		int width = 2*reach+1;
+		int count = 0;
+		for (int i = 0; i < marked.length; i++) {
+			if (marked[i]) {
+				count++;
+			}
+		}
+		int[] offsets = new int[count];
+		count = 0;
+		for (int i = 0; i < marked.length; i++) {
+			if (marked[i]) {
+				offsets[count] = Vector.makeDirection(i % width - reach, i / width - reach);
+				count++;
+			}
+		}
+		return offsets;
 	}
 
 	//////// Communications library ////////
@@ -154,10 +277,20 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		static final int SPEAR = 0x7000;
 		static final int CASTLELOC = 0x8000;
 
-		// Bitmasks for castle communications
-		static final int STRUCTURE = 0x00;
-		static final int PILGRIM = 0x40;
-		static final int ARMED = 0x80;
+		// Castle talk is framed, so that one message can be spread over several turns
+		// Every turn carries one chunk: [first chunk of a frame | sequence bit | 6 payload bits]
+		// The payload of a frame's first chunk is its header: [3 bits kind | 3 bits number of chunks that follow]
+		static final int CHUNK_FIRST = 0x80;
+		static final int CHUNK_SEQUENCE = 0x40;
+		static final int CHUNK_PAYLOAD = 0x3f;
+		static final int MAX_FRAME_LENGTH = 7;
+		static final int MAX_QUEUED_CHUNKS = 4*(MAX_FRAME_LENGTH+1);
+
+		// Kinds of castle talk frame
+		static final int FRAME_CASTLE = 1;
+		static final int FRAME_CHURCH = 2;
+		static final int FRAME_PILGRIM = 3;
+		static final int FRAME_ARMED = 4;
 
 		// Special turncount used for church spear
 		static final int SPEAR_CHURCH = 0;
@@ -165,62 +298,322 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		/** No message was received */
 		static final int NO_MESSAGE = -1;
 
+		/** How many turns a circle broadcast we passed on is remembered for, so that echoes of it are not relayed again */
+		static final int ECHO_WINDOW = 10;
+		private static final int NEVER_HANDLED = -1000000;
+
 		// Prototype methods for executing communications
 		abstract void sendRadio(int message, int radius);
 		abstract int readRadio(Robot r);
 		abstract void sendCastle(int message);
 		abstract int readCastle(Robot r);
 
+		// This turn's radio messages, each decoded once, and grouped by opcode in the order they were seen
+		private int inboxTurn = -1;
+		private Robot[] inboxSenders;
+		private int[] inboxMessages;
+		private int[] inboxByOpcode;
+		private int[] opcodeStart = new int[17];
+		private int[] opcodeCursor = new int[16];
+		private int[] inboxIndexById;
+		private int[] inboxTurnById;
+		private boolean[] inboxEcho;
+
+		// The last turn each circle broadcast was sent or acted on, indexed by echoSlot
+		private int[] lastHandledTurn;
+
+		// Castle talk chunks waiting to be sent, and how many have gone out
+		private DankQueue<Integer> outgoingChunks = new DankQueue<>(MAX_QUEUED_CHUNKS);
+		private int chunksSent = 0;
+
+		// Frames being reassembled, per sender
+		private int[] senderTurn;
+		private int[] senderSequence;
+		private int[] frameKind;
+		private int[] frameLength;
+		private int[] frameReceived;
+		private int[] framePayload;
+
 		final boolean isRadioing(Robot r) {
 			return MyRobot.this.isRadioing(r) && r.id != me.id;
 		}
 
-		final int readFarmHalfLoc() {
+		/**
+		 * Queues a frame to go out over castle talk, one chunk per turn after any frames already queued
+		 * A frame is queued whole or not at all, since half a frame would only be dropped by the receiver
+		 * @param kind One of the FRAME_ kinds
+		 * @param payload Up to MAX_FRAME_LENGTH values of 6 bits each
+		 * @return Whether the frame was queued; it isn't if the payload is too long or the queue too full
+		 */
+		final boolean queueCastleFrame(int kind, int[] payload) {
+			if (payload.length > MAX_FRAME_LENGTH || outgoingChunks.size() + 1 + payload.length > MAX_QUEUED_CHUNKS) {
+				return false;
+			}
+			outgoingChunks.add(CHUNK_FIRST | (kind << 3) | payload.length);
+			for (int value: payload) {
+				outgoingChunks.add(value & CHUNK_PAYLOAD);
+			}
+			return true;
+		}
+
+		final boolean queueCastleLocation(int kind, int location) {
+			return queueCastleFrame(kind, new int[] {Vector.getX(location), Vector.getY(location)});
+		}
+
+		/**
+		 * Sends this turn's chunk of castle talk, which is an empty chunk if nothing is queued
+		 */
+		final void sendCastleChunk() {
+			int chunk = outgoingChunks.isEmpty() ? 0 : outgoingChunks.poll();
+			if ((chunksSent & 1) == 1) {
+				chunk |= CHUNK_SEQUENCE;
+			}
+			chunksSent++;
+			sendCastle(chunk);
+		}
+
+		/**
+		 * Feeds the castle talk a robot sent last turn into its reassembly buffer
+		 * A chunk that arrives out of sequence drops the frame it belongs to
+		 * @return Whether that chunk completed a frame, which can then be read with frameKind and framePayload
+		 */
+		final boolean receiveCastleChunk(Robot r) {
+			if (senderTurn == null) {
+				senderTurn = new int[SPECS.MAX_ID+1];
+				senderSequence = new int[SPECS.MAX_ID+1];
+				frameKind = new int[SPECS.MAX_ID+1];
+				frameLength = new int[SPECS.MAX_ID+1];
+				frameReceived = new int[SPECS.MAX_ID+1];
+				framePayload = new int[(SPECS.MAX_ID+1)*MAX_FRAME_LENGTH];
+				Arrays.fill(frameLength, -1);
+			}
+			int chunk = readCastle(r);
+			if (chunk == NO_MESSAGE || r.turn == senderTurn[r.id]) {
+				return false;
+			}
+			int id = r.id;
+			int sequence = chunk & CHUNK_SEQUENCE;
+			boolean inOrder = senderTurn[id] == r.turn-1 && sequence != senderSequence[id];
+			senderTurn[id] = r.turn;
+			senderSequence[id] = sequence;
+
+			if ((chunk & CHUNK_FIRST) != 0) {
+				frameKind[id] = (chunk & CHUNK_PAYLOAD) >> 3;
+				frameLength[id] = chunk & 0x7;
+				frameReceived[id] = 0;
+			} else if (frameLength[id] == -1) {
+				// Idle, or the middle of a frame whose start we missed
+				return false;
+			} else if (!inOrder) {
+				frameLength[id] = -1;
+				return false;
+			} else {
+				framePayload[id*MAX_FRAME_LENGTH + frameReceived[id]] = chunk & CHUNK_PAYLOAD;
+				frameReceived[id]++;
+			}
+
+			if (frameReceived[id] == frameLength[id]) {
+				frameLength[id] = -1;
+				return true;
+			}
+			return false;
+		}
+
+		final int frameKind(int id) {
+			return frameKind[id];
+		}
+
+		final int framePayload(int id, int index) {
+			return framePayload[id*MAX_FRAME_LENGTH + index];
+		}
+
+		final int frameLocation(int id) {
+			return Vector.makeMapLocation(framePayload(id, 0), framePayload(id, 1));
+		}
+
+		private int opcodeOf(int message) {
+			return (message >> 12) & 0xf;
+		}
+
+		/**
+		 * @return Where a message's identity is remembered, or -1 for messages that are never relayed
+		 */
+		private int echoSlot(int message) {
+			if (opcodeOf(message) == opcodeOf(ATTACK)) {
+				return message & 0x0fff;
+			}
+			if (opcodeOf(message) == opcodeOf(SHED_RADIUS)) {
+				return 0x1000 | (message & 0x0fff);
+			}
+			return -1;
+		}
+
+		/**
+		 * @return Whether we sent or acted on this message within the last ECHO_WINDOW turns
+		 */
+		private boolean wasHandledRecently(int message) {
+			int slot = echoSlot(message);
+			return slot != -1 && lastHandledTurn != null && me.turn - lastHandledTurn[slot] <= ECHO_WINDOW;
+		}
+
+		/**
+		 * Remembers that we have passed a message on, so that echoes of it can be ignored
+		 * Messages we only heard, without being able to act on them, are not remembered, so we can still act on a later copy
+		 */
+		final void markHandled(int message) {
+			int slot = echoSlot(message);
+			if (slot == -1) {
+				return;
+			}
+			if (lastHandledTurn == null) {
+				lastHandledTurn = new int[0x2000];
+				Arrays.fill(lastHandledTurn, NEVER_HANDLED);
+			}
+			lastHandledTurn[slot] = me.turn;
+		}
+
+		/**
+		 * Sends a circle broadcast, remembering it so that it is not relayed back when it echoes around
+		 */
+		final void sendCircleBroadcast(int message, int signalRadius) {
+			markHandled(message);
+			sendRadio(message, signalRadius);
+		}
+
+		/**
+		 * Decodes every radio message in sight, the first time this turn that anyone asks for one
+		 */
+		private void checkInbox() {
+			if (inboxTurn == me.turn) {
+				return;
+			}
+			inboxTurn = me.turn;
+			if (inboxSenders == null || inboxSenders.length < visibleRobots.length) {
+				inboxSenders = new Robot[visibleRobots.length];
+				inboxMessages = new int[visibleRobots.length];
+				inboxByOpcode = new int[visibleRobots.length];
+				inboxEcho = new boolean[visibleRobots.length];
+			}
+			if (inboxIndexById == null) {
+				inboxIndexById = new int[SPECS.MAX_ID+1];
+				inboxTurnById = new int[SPECS.MAX_ID+1];
+			}
+
+			int numMessages = 0;
+			for (int i = 0; i <= 16; i++) {
+				opcodeStart[i] = 0;
+			}
 			for (Robot r: visibleRobots) {
-				if (isVisible(r) && isFriendlyStructure(r) && isRadioing(r) && r.signal_radius == 2) {
-					int msg = readRadio(r);
-					if ((msg & 0xf000) == (FARM_HALF & 0xf000)) {
-						return Vector.makeMapLocationFromCompressed(msg & 0x0fff);
-					}
+				if (isRadioing(r)) {
+					inboxSenders[numMessages] = r;
+					inboxMessages[numMessages] = readRadio(r);
+					inboxEcho[numMessages] = wasHandledRecently(inboxMessages[numMessages]);
+					inboxIndexById[r.id] = numMessages;
+					inboxTurnById[r.id] = inboxTurn;
+					opcodeStart[opcodeOf(inboxMessages[numMessages])+1]++;
+					numMessages++;
 				}
 			}
-			return Vector.INVALID;
+			// Counting sort by opcode, which keeps the messages of each opcode in the order they were seen
+			for (int i = 0; i < 16; i++) {
+				opcodeStart[i+1] += opcodeStart[i];
+				opcodeCursor[i] = opcodeStart[i];
+			}
+			for (int i = 0; i < numMessages; i++) {
+				int opcode = opcodeOf(inboxMessages[i]);
+				inboxByOpcode[opcodeCursor[opcode]] = i;
+				opcodeCursor[opcode]++;
+			}
 		}
 
-		final int readAssignedLoc() {
-			for (Robot r: visibleRobots) {
-				if (isVisible(r) && isFriendlyStructure(r) && isRadioing(r) && r.signal_radius == 2) {
-					int msg = readRadio(r);
-					if ((msg & 0xf000) == (ASSIGN & 0xf000)) {
-						return Vector.makeMapLocationFromCompressed(msg & 0x0fff);
-					}
+		/**
+		 * @param opcode One of the radio commands, e.g. ATTACK
+		 * @return How many messages with that command were received this turn
+		 */
+		final int inboxCount(int opcode) {
+			checkInbox();
+			return opcodeStart[opcodeOf(opcode)+1] - opcodeStart[opcodeOf(opcode)];
+		}
+
+		final Robot inboxSender(int opcode, int k) {
+			return inboxSenders[inboxByOpcode[opcodeStart[opcodeOf(opcode)] + k]];
+		}
+
+		final int inboxMessage(int opcode, int k) {
+			return inboxMessages[inboxByOpcode[opcodeStart[opcodeOf(opcode)] + k]];
+		}
+
+		/**
+		 * @return Whether we sent or acted on this same message recently
+		 */
+		final boolean inboxIsEcho(int opcode, int k) {
+			return inboxEcho[inboxByOpcode[opcodeStart[opcodeOf(opcode)] + k]];
+		}
+
+		/**
+		 * @return The index of the first message with this command that isn't an echo, or -1 if there is none
+		 */
+		final int firstFreshInbox(int opcode) {
+			for (int k = 0; k < inboxCount(opcode); k++) {
+				if (!inboxIsEcho(opcode, k)) {
+					return k;
 				}
 			}
-			return Vector.INVALID;
+			return -1;
 		}
 
-		final int readSpearLoc() {
-			for (Robot r: visibleRobots) {
-				if (isVisible(r) && isFriendlyStructure(r) && isRadioing(r) && r.signal_radius == 2) {
-					int msg = readRadio(r);
-					if ((msg & 0xf000) == (SPEAR & 0xf000)) {
-						return Vector.makeMapLocationFromCompressed(msg & 0x0fff);
-					}
+		final boolean readInboxIsEcho(Robot r) {
+			checkInbox();
+			return r != null && inboxTurnById[r.id] == inboxTurn && inboxEcho[inboxIndexById[r.id]];
+		}
+
+		/**
+		 * @return The decoded message a robot sent this turn, or NO_MESSAGE if it isn't radioing
+		 */
+		final int readInbox(Robot r) {
+			checkInbox();
+			if (r == null || inboxTurnById[r.id] != inboxTurn) {
+				return NO_MESSAGE;
+			}
+			return inboxMessages[inboxIndexById[r.id]];
+		}
+
+		/**
+		 * The location in the first message with the given command from an adjacent friendly structure
+		 */
+		private int readFromAdjacentStructure(int opcode) {
+			for (int k = 0; k < inboxCount(opcode); k++) {
+				Robot r = inboxSender(opcode, k);
+				if (isVisible(r) && isFriendlyStructure(r) && r.signal_radius == 2) {
+					return Vector.makeMapLocationFromCompressed(inboxMessage(opcode, k) & 0x0fff);
 				}
 			}
 			return Vector.INVALID;
 		}
 
+		final int readFarmHalfLoc() {
+			return readFromAdjacentStructure(FARM_HALF);
+		}
+
+		final int readAssignedLoc() {
+			return readFromAdjacentStructure(ASSIGN);
+		}
+
+		final int readSpearLoc() {
+			return readFromAdjacentStructure(SPEAR);
+		}
+
 		final void sendCastleLocDatapack(int castleLoc, int turn) {
 			sendRadio(Vector.compress(castleLoc) | ((turn & 7) << 12) | CASTLELOC, 3+(turn >> 3));
 		}
 
 		final int readCastleLocDatapack() {
-			for (Robot r: visibleRobots) {
-				if (isVisible(r) && r.team == me.team && r.unit == SPECS.PILGRIM && isRadioing(r) && r.signal_radius >= 3) {
-					int msg = readRadio(r);
-					if ((msg & 0x8000) == (CASTLELOC & 0x8000)) {
-						return (msg & 0x7fff) | ((r.signal_radius-3) << 15);
+			// The turn is packed into the opcode bits, so a datapack can have any opcode with the top bit set
+			for (int opcode = CASTLELOC; opcode <= 0xf000; opcode += 0x1000) {
+				for (int k = 0; k < inboxCount(opcode); k++) {
+					Robot r = inboxSender(opcode, k);
+					if (isVisible(r) && r.team == me.team && r.unit == SPECS.PILGRIM && r.signal_radius >= 3) {
+						return (inboxMessage(opcode, k) & 0x7fff) | ((r.signal_radius-3) << 15);
 					}
 				}
 			}
@@ -275,14 +668,35 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		private final int RADIO_MAX = 1 << (SPECS.COMMUNICATION_BITS);
 		private final int CASTLE_MAX = 1 << (SPECS.CASTLE_TALK_BITS);
 
+		// The keystream word of each robot, for the turn it was worked out on
+		// An entry from an older turn is simply overwritten the next time that robot is heard from
+		private int[] keyWord;
+		private int[] keyTurn;
+
+		EncryptedCommunicator() {
+			keyWord = new int[SPECS.MAX_ID+1];
+			keyTurn = new int[SPECS.MAX_ID+1];
+			for (int i = 0; i <= SPECS.MAX_ID; i++) {
+				keyTurn[i] = -1;
+			}
+		}
+
+		private int keyFor(int id, int turn) {
+			if (keyTurn[id] != turn) {
+				keyTurn[id] = turn;
+				keyWord[id] = Math.abs(SimpleRandom.advance(id ^ turn));
+			}
+			return keyWord[id];
+		}
+
 		@Override
 		int readRadio(Robot r) {
-			return r.signal ^ (Math.abs(SimpleRandom.advance(r.id ^ r.turn)) % RADIO_MAX);
+			return r.signal ^ (keyFor(r.id, r.turn) % RADIO_MAX);
 		}
 
 		@Override
 		void sendRadio(int value, int signalRadius) {
-			signal(value ^ (Math.abs(SimpleRandom.advance(me.id ^ me.turn)) % RADIO_MAX), signalRadius);
+			signal(value ^ (keyFor(me.id, me.turn) % RADIO_MAX), signalRadius);
 		}
 
 		@Override
@@ -290,12 +704,12 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			if (r.turn == 0 || (r.turn == 1 && me.id == r.id)) {
 				return NO_MESSAGE;
 			}
-			return r.castle_talk ^ (Math.abs(SimpleRandom.advance(r.id ^ r.turn)) % CASTLE_MAX);
+			return r.castle_talk ^ (keyFor(r.id, r.turn) % CASTLE_MAX);
 		}
 
 		@Override
 		void sendCastle(int value) {
-			castleTalk(value ^ (Math.abs(SimpleRandom.advance(me.id ^ me.turn)) % CASTLE_MAX));
+			castleTalk(value ^ (keyFor(me.id, me.turn) % CASTLE_MAX));
 		}
 	}
 
@@ -356,11 +770,9 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		protected final int LOW_KARBONITE_RESERVE_TURN_THRESHOLD = 4;
 		protected final int SPAM_CRUSADER_TURN_THRESHOLD = SPECS.MAX_ROUNDS-200;
 
-		protected int myCastleTalk;
 		protected int builderTurn;
 
 		SpecificRobotController() {
-			myCastleTalk = 0;
 			builderTurn = 1;
 		}
 
@@ -374,7 +786,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				log("Exception caught: "+e.getMessage());
 			}
 
-			communications.sendCastle(myCastleTalk);
+			communications.sendCastleChunk();
 			builderTurn++;
 
 			return myAction;
@@ -388,9 +800,10 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		 */
 		protected int selectDirectionTowardsLocation(int targetLoc) {
 			int bestDir = Vector.INVALID;
-			for (int d: dirs) {
-				int location = Vector.add(myLoc, d);
-				if (isOccupiable(location)) {
+			for (int msk = MoveTable.movesFrom(myLoc, 2); msk != 0; msk ^= (msk&-msk)) {
+				int d = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int location = myLoc + d;
+				if (Vector.get(location, visibleRobotMap) <= 0) {
 					if (bestDir == Vector.INVALID ||
 						Vector.distanceSquared(targetLoc, location) < Vector.distanceSquared(targetLoc, myLoc+bestDir)) {
 
@@ -436,14 +849,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		}
 
 		protected int getBroadcastUniverseRadiusSquared() {
-			int result = 0;
-			for (int i = 0; i < boardSize; i++) for (int j = 0; j < boardSize; j++) {
-				int mapLoc = Vector.makeMapLocation(i, j);
-				if (Vector.get(mapLoc, map)) {
-					result = Math.max(result, Vector.distanceSquared(myLoc, mapLoc));
-				}
-			}
-			return result;
+			return broadcastPlanner.fullBoardRadiusSquared(myLoc);
 		}
 	}
 
@@ -451,30 +857,50 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private class UnitWelfareChecker {
 
-			private TreeMap<Integer, Integer> assignments;
+			private static final int NOT_TRACKED = -1;
+			private static final int PILGRIM_GIVING_MEMORY = 30;
+
+			// Indexed by robot id, with a dense list of the ids we are tracking
+			private int[] assignment;
+			private int[] activeIndex;
+			private int[] active;
+			private int numActive;
 			private int[][] whoIsAssigned;
 			private int[] unitType;
 
+			// The turn each robot was last in visibleRobots, so that liveness is one array lookup
+			private int[] seenTurn;
+
 			private LinkedList<Integer> relieved;
-			private int[] incompleteData;
 			private int previousAssignment;
 
-			private TreeMap<Integer, Integer> pilgrimLastGive;
+			// Pilgrims that have given to us recently, in the same layout
+			private int[] pilgrimLastGive;
+			private int[] givingIndex;
+			private int[] giving;
+			private int numGiving;
 			private int numPilgrimsConstant; // = to total resources/2
 			private int armedUnits;
 
 			UnitWelfareChecker() {
-				assignments = new TreeMap<>();
+				assignment = new int[SPECS.MAX_ID+1];
+				activeIndex = new int[SPECS.MAX_ID+1];
+				Arrays.fill(activeIndex, NOT_TRACKED);
+				active = new int[SPECS.MAX_ID+1];
+				numActive = 0;
 				whoIsAssigned = new int[boardSize][boardSize];
 				unitType = new int[SPECS.MAX_ID+1];
 				Arrays.fill(unitType, NO_UNIT);
+				seenTurn = new int[SPECS.MAX_ID+1];
 
 				relieved = new LinkedList<>();
-				incompleteData = new int[SPECS.MAX_ID+1];
-				Arrays.fill(incompleteData, -1);
 				previousAssignment = Vector.INVALID;
 
-				pilgrimLastGive = new TreeMap<>();
+				pilgrimLastGive = new int[SPECS.MAX_ID+1];
+				givingIndex = new int[SPECS.MAX_ID+1];
+				Arrays.fill(givingIndex, NOT_TRACKED);
+				giving = new int[SPECS.MAX_ID+1];
+				numGiving = 0;
 
 				numPilgrimsConstant = 0;
 				for (int i = 0; i < boardSize; i++) for (int j = 0; j < boardSize; j++) {
@@ -487,7 +913,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				armedUnits = 0;
 				for (Robot r: visibleRobots) {
 					if (isVisible(r) && r.team == me.team) {
-						assignments.put(r.id, Vector.INVALID);
+						track(r.id, Vector.INVALID);
 						unitType[r.id] = r.unit;
 						if (isArmed(r.unit)) {
 							armedUnits++;
@@ -496,29 +922,57 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				}
 			}
 
+			private boolean isTracked(int id) {
+				return activeIndex[id] != NOT_TRACKED;
+			}
+
+			private void track(int id, int location) {
+				if (!isTracked(id)) {
+					activeIndex[id] = numActive;
+					active[numActive] = id;
+					numActive++;
+				}
+				assignment[id] = location;
+			}
+
+			private void untrack(int id) {
+				numActive--;
+				active[activeIndex[id]] = active[numActive];
+				activeIndex[active[numActive]] = activeIndex[id];
+				activeIndex[id] = NOT_TRACKED;
+			}
+
+			private void stopGiving(int id) {
+				if (givingIndex[id] == NOT_TRACKED) {
+					return;
+				}
+				numGiving--;
+				giving[givingIndex[id]] = giving[numGiving];
+				givingIndex[giving[numGiving]] = givingIndex[id];
+				givingIndex[id] = NOT_TRACKED;
+			}
+
+			private boolean isAlive(int id) {
+				return seenTurn[id] == me.turn;
+			}
+
 			void recordNewAssignment(int location) {
 				previousAssignment = location;
 			}
 
 			/**
-			 * Records a received coordinate
-			 * @param id  the robot to whom the coordinate belongs
-			 * @param cor the received coordinate
-			 * @return a completed MapLocation if one can be deduced, and Vector.INVALID otherwise
+			 * Records a location received over castle talk
+			 * @param id  the robot to whom the location belongs
+			 * @param loc the received location
+			 * @return the location the robot is assigned to, which is the one it already had if any
 			 */
-			int recordCoordinate(int id, int cor, int unit) {
-				if (assignments.containsKey(id)) {
-					return assignments.get(id);
-				}
-				if (incompleteData[id] == -1) {
-					incompleteData[id] = cor;
-					return Vector.INVALID;
+			int recordLocation(int id, int loc, int unit) {
+				if (isTracked(id)) {
+					return assignment[id];
 				}
-				int loc = Vector.makeMapLocation(incompleteData[id], cor);
-				assignments.put(id, loc);
+				track(id, loc);
 				Vector.set(loc, whoIsAssigned, id);
 				unitType[id] = unit;
-				incompleteData[id] = -1;
 				if (isArmed(unit)) {
 					armedUnits++;
 				}
@@ -531,16 +985,20 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			 */
 			LinkedList<Integer> checkWelfare() {
 
+				for (Robot r: visibleRobots) {
+					seenTurn[r.id] = me.turn;
+				}
+
 				checkPilgrimGiving();
 				// Observation: the new unit is the only never-before-seen unit in a radius of r^2 = 18
 				if (previousAssignment != Vector.INVALID) {
 					for (Robot r: visibleRobots) {
-						if (isVisible(r) && r.team == me.team && !assignments.containsKey(r.id)) {
+						if (isVisible(r) && r.team == me.team && !isTracked(r.id)) {
 							if (Vector.distanceSquared(myLoc, Vector.makeMapLocation(r.x, r.y)) <= 18) {
-								assignments.put(r.id, previousAssignment);
+								track(r.id, previousAssignment);
 								Vector.set(Vector.makeMapLocation(r.x, r.y), whoIsAssigned, r.id);
 							} else {
-								assignments.put(r.id, Vector.INVALID);
+								track(r.id, Vector.INVALID);
 							}
 							unitType[r.id] = r.unit;
 							if (isArmed(r.unit)) {
@@ -552,11 +1010,13 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				}
 
 				relieved.clear();
-				for (Integer assignedUnit: assignments.keySet()) {
-					if (getRobot(assignedUnit) == null) {
-						int whatLoc = assignments.get(assignedUnit);
-						assignments.remove(assignedUnit);
-						pilgrimLastGive.remove(assignedUnit);
+				// Backwards, so that swapping the last unit into a removed slot never skips anyone
+				for (int i = numActive-1; i >= 0; i--) {
+					int assignedUnit = active[i];
+					if (!isAlive(assignedUnit)) {
+						int whatLoc = assignment[assignedUnit];
+						untrack(assignedUnit);
+						stopGiving(assignedUnit);
 						if (isArmed(unitType[assignedUnit])) {
 							armedUnits--;
 						} 
@@ -577,17 +1037,18 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			LinkedList<Integer> purgeForCircleAttack(int shedRadius) {
 
 				relieved.clear();
-				for (Integer assignedUnit: assignments.keySet()) {
+				for (int i = 0; i < numActive; i++) {
+					int assignedUnit = active[i];
 					if (isArmed(unitType[assignedUnit]) && unitType[assignedUnit] != SPECS.CASTLE) {
-						int assignment = assignments.get(assignedUnit);
+						int thisAssignment = assignment[assignedUnit];
 						int thisDist = Integer.MAX_VALUE;
 						for (Integer structure: structures.keySet()) {
-							thisDist = Math.min(thisDist, Vector.distanceSquared(assignment, structures.get(structure)));
+							thisDist = Math.min(thisDist, Vector.distanceSquared(thisAssignment, structures.get(structure)));
 						}
 						if (thisDist >= shedRadius) {
-							if (assignment != Vector.INVALID) {
-								relieved.add(assignment);
-								Vector.set(assignment, whoIsAssigned, 0);
+							if (thisAssignment != Vector.INVALID) {
+								relieved.add(thisAssignment);
+								Vector.set(thisAssignment, whoIsAssigned, 0);
 							}
 							/*
 							* Your mission, should you choose to accept it, is to infiltrate the enemy turtle.
@@ -595,7 +1056,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 							* will disavow any knowledge of your actions.
 							* This tape will self-destruct in ten seconds. Good luck.
 							*/
-							assignments.put(assignedUnit, Vector.INVALID);
+							assignment[assignedUnit] = Vector.INVALID;
 							unitType[assignedUnit] = NO_UNIT;
 						}
 					}
@@ -611,13 +1072,19 @@ public strictfp class MyRobot extends BCAbstractRobot {
 					if (loc != Vector.INVALID) {
 						Robot r = getRobot(Vector.get(loc, visibleRobotMap));
 						if (r != null && r.unit == SPECS.PILGRIM && r.team == me.team) {
-							pilgrimLastGive.put(r.id, me.turn);
+							if (givingIndex[r.id] == NOT_TRACKED) {
+								givingIndex[r.id] = numGiving;
+								giving[numGiving] = r.id;
+								numGiving++;
+							}
+							pilgrimLastGive[r.id] = me.turn;
 						}
 					}
 				}
-				for (Integer pilgrim: pilgrimLastGive.keySet()) {
-					if (getRobot(pilgrim) == null || pilgrimLastGive.get(pilgrim) <= me.turn - 30) {
-						pilgrimLastGive.remove(pilgrim);
+				for (int i = numGiving-1; i >= 0; i--) {
+					int pilgrim = giving[i];
+					if (!isAlive(pilgrim) || pilgrimLastGive[pilgrim] <= me.turn - PILGRIM_GIVING_MEMORY) {
+						stopGiving(pilgrim);
 					} 
 				}
 			}
@@ -627,15 +1094,14 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			}
 
 			double proportionOfPilgrimsGivingToUs() {
-				return (double)pilgrimLastGive.size() / (double)numPilgrimsConstant;
+				return (double)numGiving / (double)numPilgrimsConstant;
 			}
 
 			int getAssignment(int id) {
-				Integer what = assignments.get(id);
-				if (what == null) {
+				if (!isTracked(id)) {
 					return Vector.INVALID;
 				}
-				return what;
+				return assignment[id];
 			}
 
 			boolean locationIsAssigned(int location) {
@@ -645,6 +1111,18 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			boolean checkIsArmed(int id) {
 				return isArmed(unitType[id]);
 			}
+
+			/**
+			 * Adds where every armed unit we know of should be standing to a broadcast's audience
+			 */
+			void addArmedUnitsToAudience(BroadcastPlanner planner) {
+				for (int i = 0; i < numActive; i++) {
+					int unit = active[i];
+					if (isArmed(unitType[unit]) && !isStructure(unitType[unit])) {
+						planner.addRecipient(assignment[unit]);
+					}
+				}
+			}
 		}
 
 		/**
@@ -667,7 +1145,6 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		protected LinkedList<Integer> enemyTargets;
 
 		protected UnitWelfareChecker myUnitWelfareChecker;
-		protected int broadcastUniverseRadiusSquared;
 
 		StructureController() {
 			super();
@@ -684,14 +1161,11 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			enemyTargets = new LinkedList<>();
 
 			myUnitWelfareChecker = new UnitWelfareChecker();
-			broadcastUniverseRadiusSquared = getBroadcastUniverseRadiusSquared();
 		}
 
 		protected void sendStructureLocation() {
 			if (me.turn == 1) {
-				myCastleTalk = me.x | Communicator.STRUCTURE;
-			} else if (me.turn == 2) {
-				myCastleTalk = me.y | Communicator.STRUCTURE;
+				communications.queueCastleLocation(me.unit == SPECS.CASTLE ? Communicator.FRAME_CASTLE : Communicator.FRAME_CHURCH, myLoc);
 			}
 		}
 
@@ -932,15 +1406,35 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			}
 		}
 
-		protected NullAction circleInitiate(int targetLoc) {
+		/**
+		 * The radius a circle broadcast needs: every armed unit we sent out, and every other structure to relay it
+		 * Robots already charging in a circle also listen for new targets, and we don't know where they are,
+		 * so attacks go to the whole board once a circle is under way
+		 * Other structures must stay in the audience for both kinds: they relay SHED_RADIUS to their own turtles too
+		 * @param isAttack Whether this is an ATTACK rather than a SHED_RADIUS
+		 * @param isRelay Whether we are passing on another structure's circle
+		 */
+		protected int getCircleAudienceRadiusSquared(boolean isAttack, boolean isRelay) {
+			if (isAttack && (isRelay || lastCircleTurn >= 0)) {
+				return getBroadcastUniverseRadiusSquared();
+			}
+			broadcastPlanner.beginAudience(myLoc);
+			myUnitWelfareChecker.addArmedUnitsToAudience(broadcastPlanner);
+			for (Integer structure: structures.keySet()) {
+				broadcastPlanner.addRecipient(structures.get(structure));
+			}
+			return broadcastPlanner.audienceRadiusSquared();
+		}
+
+		protected NullAction circleInitiate(int targetLoc, boolean isRelay) {
 			circleInitiated = true;
-			communications.sendRadio(Vector.compress(targetLoc) | Communicator.ATTACK, broadcastUniverseRadiusSquared);
+			communications.sendCircleBroadcast(Vector.compress(targetLoc) | Communicator.ATTACK, getCircleAudienceRadiusSquared(true, isRelay));
 			return new NullAction();
 		}
 
 		protected NullAction circleSendShedRadius(int shedRadius) {
 			circleInitiated = false;
-			communications.sendRadio(shedRadius | Communicator.SHED_RADIUS, broadcastUniverseRadiusSquared);
+			communications.sendCircleBroadcast(shedRadius | Communicator.SHED_RADIUS, getCircleAudienceRadiusSquared(false, false));
 			lastCircleTurn = me.turn;
 			for (Integer relieved: myUnitWelfareChecker.purgeForCircleAttack(shedRadius)) {
 				if (isGoodTurtlingLocation(relieved)) {
@@ -955,6 +1449,11 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		protected int myHome;
 
+		// Prefix sums of attack priority and enemy count around a preacher
+		private int splashWidth;
+		private int[] splashValueSum;
+		private int[] splashEnemySum;
+
 		MobileRobotController() {
 			super();
 
@@ -991,41 +1490,65 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			}
 		}
 
+		/**
+		 * For single-target attackers; preachers are scored from the splash sums instead
+		 */
 		private int getAttackValue(int targetLoc) {
-			if (me.unit != SPECS.PREACHER) {
-				Robot what = getRobot(Vector.get(targetLoc, visibleRobotMap));
-				if (what == null || what.team == me.team) {
-					return Integer.MIN_VALUE;
-				}
-				return attackPriority(what.unit);
-			}
-
-			boolean useful = false;
-			int value = 0;
-			for (int i = -1; i <= 1; i++) for (int j = -1; j <= 1; j++) {
-				int affectLoc = Vector.add(targetLoc, Vector.makeDirection(i, j));
-				if (affectLoc != Vector.INVALID) {
-					int visibleState = Vector.get(affectLoc, visibleRobotMap);
-					if (visibleState != MAP_EMPTY) {
-						if (visibleState != MAP_INVISIBLE) {
+			Robot what = getRobot(Vector.get(targetLoc, visibleRobotMap));
+			if (what == null || what.team == me.team) {
+				return Integer.MIN_VALUE;
+			}
+			return attackPriority(what.unit);
+		}
+
+		/**
+		 * Scores every preacher target around us at once
+		 * Each square in a window around us gets its signed attack priority, and 2D prefix sums over that grid
+		 * give the total over any 3x3 splash area in constant time, instead of looking at each square nine times
+		 * @param maxDispl How far away a target square can be along either axis
+		 */
+		private void buildSplashSums(int maxDispl) {
+			int reach = maxDispl+1;
+			int width = 2*reach+1;
+			if (splashValueSum == null || splashWidth != width) {
+				splashWidth = width;
+				splashValueSum = new int[(width+1)*(width+1)];
+				splashEnemySum = new int[(width+1)*(width+1)];
+			}
+			int stride = width+1;
+			for (int j = 0; j < width; j++) {
+				int rowValue = 0, rowEnemies = 0;
+				for (int i = 0; i < width; i++) {
+					int location = Vector.add(myLoc, Vector.makeDirection(i-reach, j-reach));
+					if (location != Vector.INVALID) {
+						int visibleState = Vector.get(location, visibleRobotMap);
+						if (visibleState == MAP_INVISIBLE) {
+							// Speculate. Maybe we could gain out of this.
+							rowValue++;
+						} else if (visibleState != MAP_EMPTY) {
 							Robot what = getRobot(visibleState);
 							if (what.team == me.team) {
-								value -= attackPriority(what.unit);
+								rowValue -= attackPriority(what.unit);
 							} else {
-								value += attackPriority(what.unit);
-								useful = true;
+								rowValue += attackPriority(what.unit);
+								rowEnemies++;
 							}
-						} else {
-							// Speculate. Maybe we could gain out of this.
-							value++;
 						}
 					}
+					splashValueSum[(j+1)*stride + i+1] = splashValueSum[j*stride + i+1] + rowValue;
+					splashEnemySum[(j+1)*stride + i+1] = splashEnemySum[j*stride + i+1] + rowEnemies;
 				}
 			}
-			if (useful) {
-				return value;
-			}
-			return Integer.MIN_VALUE;
+		}
+
+		/**
+		 * The total of a prefix-summed grid over the 3x3 block centred on a displacement from us
+		 */
+		private int splashBoxSum(int[] sum, int dx, int dy) {
+			int reach = (splashWidth-1)/2;
+			int stride = splashWidth+1;
+			int x0 = dx+reach-1, y0 = dy+reach-1;
+			return sum[(y0+3)*stride + x0+3] - sum[y0*stride + x0+3] - sum[(y0+3)*stride + x0] + sum[y0*stride + x0];
 		}
 
 		protected AttackAction tryToAttack() {
@@ -1038,6 +1561,9 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			int bestLoc = Vector.INVALID;
 
 			int maxDispl = (int)Math.ceil(Math.sqrt(SPECS.UNITS[me.unit].ATTACK_RADIUS[1]));
+			if (me.unit == SPECS.PREACHER) {
+				buildSplashSums(maxDispl);
+			}
 			for (int i = -maxDispl; i <= maxDispl; i++) for (int j = -maxDispl; j <= maxDispl; j++) {
 				int dir = Vector.makeDirection(i, j);
 				if (Vector.magnitude(dir) >= SPECS.UNITS[me.unit].ATTACK_RADIUS[0] &&
@@ -1045,7 +1571,12 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 					int location = Vector.add(myLoc, dir);
 					if (location != Vector.INVALID) {
-						int altValue = getAttackValue(location);
+						int altValue;
+						if (me.unit == SPECS.PREACHER) {
+							altValue = (splashBoxSum(splashEnemySum, i, j) > 0) ? splashBoxSum(splashValueSum, i, j) : Integer.MIN_VALUE;
+						} else {
+							altValue = getAttackValue(location);
+						}
 						if (altValue > bestValue) {
 							bestValue = altValue;
 							bestLoc = location;
@@ -1062,12 +1593,10 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		}
 
 		protected int checkForDistress() {
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r) && Vector.makeMapLocation(r.x, r.y) == myHome) {
-					int msg = communications.readRadio(r);
-					if ((msg & 0xf000) == (Communicator.DISTRESS & 0xf000)) {
-						return Vector.makeMapLocationFromCompressed(msg & 0x0fff);
-					}
+			for (int k = 0; k < communications.inboxCount(Communicator.DISTRESS); k++) {
+				Robot r = communications.inboxSender(Communicator.DISTRESS, k);
+				if (Vector.makeMapLocation(r.x, r.y) == myHome) {
+					return Vector.makeMapLocationFromCompressed(communications.inboxMessage(Communicator.DISTRESS, k) & 0x0fff);
 				}
 			}
 			return Vector.INVALID;
@@ -1122,6 +1651,12 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		private TreeMap<Integer, Integer> castles;
 		private boolean oppositeCastleIsDestroyed;
 
+		// Which castle each square is closest to by path, rather than by straight line
+		// Churches are deliberately not sources: only castles build pilgrims, so a resource that went to a church
+		// would never be staffed, and the pilgrims there drop off at the church whichever castle sent them
+		private StructureDistanceOracle castleTerritories;
+		private int ownershipVersion;
+
 		CastleController() {
 			super();
 			karboniteLocs = new LinkedList<>();
@@ -1139,6 +1674,10 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			castles = new TreeMap<>();
 			oppositeCastleIsDestroyed = false;
 
+			castleTerritories = new StructureDistanceOracle(map, SPECS.UNITS[SPECS.PILGRIM].SPEED);
+			castleTerritories.addSource(me.id, myLoc);
+			ownershipVersion = -1;
+
 			for (int i = 0; i < boardSize; i++) for (int j = 0; j < boardSize; j++) {
 				if (karboniteMap[j][i]) {
 					int loc = Vector.makeMapLocation(i, j);
@@ -1181,11 +1720,14 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			sendStructureLocation();
 			readUnitLocations();
 			checkUnitsWelfare();
-			checkResourceDepotOwnership(karboniteLocs, ownKarbonite);
-			checkResourceDepotOwnership(fuelLocs, ownFuel);
+			if (castleTerritories.getVersion() != ownershipVersion) {
+				checkResourceDepotOwnership(karboniteLocs, ownKarbonite);
+				checkResourceDepotOwnership(fuelLocs, ownFuel);
+				ownershipVersion = castleTerritories.getVersion();
+			}
 			checkForCircleSuccess();
 
-			if (me.turn == 3) {
+			if (me.turn == 4) {
 				generateTurtleLocations();
 			}
 
@@ -1250,7 +1792,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		private NullAction checkToInitiateCircle() {
 
 			if (fuel >= fuelForCircle() && myUnitWelfareChecker.numFriendlyArmedUnits() >= requiredUnitsForCircle()) {
-				return circleInitiate(Vector.opposite(myLoc, symmetryStatus));
+				return circleInitiate(Vector.opposite(myLoc, symmetryStatus), false);
 			}
 			return null;
 		}
@@ -1278,14 +1820,16 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 			// Did another castle say something?
 			for (Integer castle: castles.keySet()) {
-				Robot r = getRobot(castle);
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.ATTACK & 0xf000) && me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && !circleInitiated) {
+				int what = communications.readInbox(getRobot(castle));
+				if (what != Communicator.NO_MESSAGE) {
+					if ((what & 0xf000) == (Communicator.ATTACK & 0xf000) && me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && !circleInitiated &&
+						!communications.readInboxIsEcho(getRobot(castle))) {
+
+						communications.markHandled(what);
 						if (oppositeCastleIsDestroyed) {
-							return circleInitiate(Vector.makeMapLocationFromCompressed(what & 0x0fff));
+							return circleInitiate(Vector.makeMapLocationFromCompressed(what & 0x0fff), true);
 						} else {
-							return circleInitiate(Vector.opposite(myLoc, symmetryStatus));
+							return circleInitiate(Vector.opposite(myLoc, symmetryStatus), true);
 						}
 					} else if ((what & 0xf000) == (Communicator.SHED_RADIUS & 0xf000) && me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && circleInitiated) {
 						return circleSendShedRadius(what & 0x0fff);
@@ -1300,21 +1844,22 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		}
 
 		private void checkForCircleSuccess() {
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.CIRCLE_SUCCESS & 0xf000)) {
-						int loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
-						if (loc == Vector.opposite(myLoc, symmetryStatus)) {
-							oppositeCastleIsDestroyed = true;
-						}
-						removeIndexFromList(enemyTargets, enemyTargets.indexOf(loc));
-					}
+			for (int k = 0; k < communications.inboxCount(Communicator.CIRCLE_SUCCESS); k++) {
+				int what = communications.inboxMessage(Communicator.CIRCLE_SUCCESS, k);
+				int loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
+				if (loc == Vector.opposite(myLoc, symmetryStatus)) {
+					oppositeCastleIsDestroyed = true;
 				}
+				removeIndexFromList(enemyTargets, enemyTargets.indexOf(loc));
 			}
 		}
 
 		private boolean checkIfMine(int location) {
+			int owner = castleTerritories.getOwner(location);
+			if (owner != StructureDistanceOracle.NO_SOURCE) {
+				return owner == me.id;
+			}
+			// Walled off from every castle, so fall back to straight-line distance
 			int myDist = Vector.distanceSquared(myLoc, location);
 			for (Integer castle: castles.keySet()) {
 				if (Vector.distanceSquared(castles.get(castle), location) < myDist) {
@@ -1379,6 +1924,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 					for (Integer castle: castles.keySet()) {
 						if (castles.get(castle) == location) {
 							castles.remove(castle);
+							castleTerritories.removeSource(castle);
 							break;
 						}
 					}
@@ -1397,33 +1943,31 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private void readUnitLocations() {
 			for (Robot r: visibleRobots) {
-				if (r.team == me.team && 1 <= r.turn && r.turn <= 2 && r.id != me.id) {
-					int what = communications.readCastle(r);
+				if (r.team == me.team && r.id != me.id && communications.receiveCastleChunk(r)) {
 					int unit = NO_UNIT;
-					switch (what & 0xc0) {
-						case Communicator.STRUCTURE:
-							if (me.turn <= 3) {
-								unit = SPECS.CASTLE;
-							} else {
-								unit = SPECS.CHURCH;
-							}
+					switch (communications.frameKind(r.id)) {
+						case Communicator.FRAME_CASTLE:
+							unit = SPECS.CASTLE;
+							break;
+						case Communicator.FRAME_CHURCH:
+							unit = SPECS.CHURCH;
 							break;
-						case Communicator.PILGRIM:
+						case Communicator.FRAME_PILGRIM:
 							unit = SPECS.PILGRIM;
 							break;
-						case Communicator.ARMED:
+						case Communicator.FRAME_ARMED:
 							unit = ARMED_UNIT;
 							break;
 					}
 					// Messages should be guaranteed to be valid, but just in case
 					if (unit != NO_UNIT) {
-						// Only mark its unit type once full location is received
-						int completeLocation = myUnitWelfareChecker.recordCoordinate(r.id, what & 0x3f, unit);
-						if (r.turn == 2 && unit == SPECS.CASTLE) {
+						int completeLocation = myUnitWelfareChecker.recordLocation(r.id, communications.frameLocation(r.id), unit);
+						if (unit == SPECS.CASTLE) {
 							castles.put(r.id, completeLocation);
+							castleTerritories.addSource(r.id, completeLocation);
 							enemyTargets.add(Vector.opposite(completeLocation, symmetryStatus));
 						}
-						if (r.turn == 2 && isStructure(unit)) {
+						if (isStructure(unit)) {
 							structures.put(r.id, completeLocation);
 						}
 					}
@@ -1456,6 +2000,13 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			return myAction;
 		}
 
+		/**
+		 * Rules out resources that no pilgrim built here could ever walk to, without searching
+		 */
+		private boolean canPilgrimReach(int location) {
+			return MoveTable.sameComponent(myLoc, location, SPECS.UNITS[SPECS.PILGRIM].SPEED);
+		}
+
 		private BuildAction tryToCreatePilgrimForResource(LinkedList<Integer> locations, LinkedList<Boolean> pilgrimAt, LinkedList<Boolean> own) {
 			if (!canAffordToBuild(SPECS.PILGRIM, false)) return null;
 
@@ -1470,13 +2021,13 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				int bestLoc = Vector.INVALID;
 				for (int i = 0; i < locations.size(); ++i) {
 					// If we don't know where castles are, only try the resources in the closest cluster
-					if (me.turn <= 3 &&
+					if (me.turn <= 4 &&
 						ResourceClusterSolver.assignedCluster(locations.get(i)) != myClusterId) {
 
 						continue;
 					}
 
-					if (own.get(i) && !pilgrimAt.get(i)) {
+					if (own.get(i) && !pilgrimAt.get(i) && canPilgrimReach(locations.get(i))) {
 						int dist = Vector.distanceSquared(locations.get(i), myLoc);
 						if (dist <= Vector.distanceSquared(locations.get(i), Vector.opposite(myLoc, symmetryStatus))) {
 
@@ -1509,10 +2060,10 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				int minAssigned = Integer.MAX_VALUE;
 				for (int i = 0; i < locations.size(); i++) {
 					// If we don't know where castles are, only try the resources in the closest cluster
-					if (me.turn <= 3 && ResourceClusterSolver.assignedCluster(locations.get(i)) != myClusterId) {
+					if (me.turn <= 4 && ResourceClusterSolver.assignedCluster(locations.get(i)) != myClusterId) {
 						continue;
 					}
-					if (own.get(i) && !pilgrimAt.get(i)) {
+					if (own.get(i) && !pilgrimAt.get(i) && canPilgrimReach(locations.get(i))) {
 						if (me.turn >= INVADE_ENEMY_FARMS_TURN_THRESHOLD ||
 							Vector.distanceSquared(locations.get(i), myLoc) <=
 							Vector.distanceSquared(locations.get(i), Vector.opposite(myLoc, symmetryStatus))) {
@@ -1526,11 +2077,11 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 					// If we don't know where castles are, only try the resources in the
 					// closest cluster, or we screw up on maps like 420
-					if (me.turn <= 3 && ResourceClusterSolver.assignedCluster(locations.get(i)) != myClusterId) {
+					if (me.turn <= 4 && ResourceClusterSolver.assignedCluster(locations.get(i)) != myClusterId) {
 						continue;
 					}
 
-					if (own.get(i) && !pilgrimAt.get(i)
+					if (own.get(i) && !pilgrimAt.get(i) && canPilgrimReach(locations.get(i))
 						&& (pilgrimsAtCluster[ResourceClusterSolver.assignedCluster(locations.get(i))] == minAssigned)) {
 
 						if (me.turn >= INVADE_ENEMY_FARMS_TURN_THRESHOLD ||
@@ -1713,15 +2264,13 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private NullAction tryToCompleteCircleBroadcast() {
 
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.ATTACK & 0xf000) && me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && !circleInitiated) {
-						return circleInitiate(Vector.makeMapLocationFromCompressed(what & 0x0fff));
-					} else if ((what & 0xf000) == (Communicator.SHED_RADIUS & 0xf000) && me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && circleInitiated) {
-						return circleSendShedRadius(what & 0x0fff);
-					}
-				}
+			// Echoes of an attack we have already passed on are not worth paying for again
+			int fresh = communications.firstFreshInbox(Communicator.ATTACK);
+			if (me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && !circleInitiated && fresh != -1) {
+				communications.markHandled(communications.inboxMessage(Communicator.ATTACK, fresh));
+				return circleInitiate(Vector.makeMapLocationFromCompressed(communications.inboxMessage(Communicator.ATTACK, fresh) & 0x0fff), true);
+			} else if (me.turn >= lastCircleTurn+CIRCLE_COOLDOWN && circleInitiated && communications.inboxCount(Communicator.SHED_RADIUS) > 0) {
+				return circleSendShedRadius(communications.inboxMessage(Communicator.SHED_RADIUS, 0) & 0x0fff);
 			}
 			// No circle broadcast to propagate
 			return null;
@@ -1753,7 +2302,19 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		private final int spearLoc;
 		private int lastSpear;
 
+		// Danger-weighted costs for entering a square
+		private static final int MAY_BE_ATTACKED_COST = 4;
+		private static final int IS_ATTACKED_COST = 12;
+
+		// With less than this much fuel to spare, a detour is re-cut to spend less fuel at the cost of a few turns
+		private static final int SCARCE_FUEL_MARGIN = 150;
+		private static final int FUEL_SAVING_EXTRA_TURNS = 2;
+
 		private int assignedLoc;
+		private DistanceField resourceLeg;
+		private DistanceField dropoffLeg;
+		private int pathGoal;
+		private boolean pathAdjacentGoal;
 		private int farmHalfQty;
 		private boolean farmHalf;
 		private int churchLoc;
@@ -1768,6 +2329,11 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			} else {
 				spearLoc = Vector.INVALID;
 
+				pathGoal = Vector.INVALID;
+				pathAdjacentGoal = false;
+				resourceLeg = new DistanceField();
+				dropoffLeg = new DistanceField();
+
 				assignedLoc = communications.readFarmHalfLoc();
 				if (assignedLoc != Vector.INVALID) {
 					farmHalfQty = 2;
@@ -1863,31 +2429,62 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			}
 
 			if (myAction == null && fuel >= fuelReserve()) {
-				int dir = myBfsSolver.nextStep();
-				int newLoc = Vector.add(myLoc, dir);
-				if (dir == Vector.INVALID || !isOccupiable(newLoc) || Vector.get(newLoc, mayBecomeAttacked) == me.turn) {
-					myBfsSolver.solve(myLoc, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
-						(location) -> {
-							if (wantChurch) {
-								return Vector.isAdjacent(location, churchLoc);
-							}
-							if (me.karbonite < karboniteLimit() && me.fuel < fuelLimit()) {
-								return location == assignedLoc;
-							}
-							if (churchBuilt) {
-								return Vector.isAdjacent(location, churchLoc);
-							}
-							return Vector.isAdjacent(location, myHome);
-						},
-						(location) -> {
-							return isOccupiable(location) &&
-								(Vector.get(location, mayBecomeAttacked) != me.turn || Vector.get(assignedLoc, mayBecomeAttacked) == me.turn);
-						}
+				int goal;
+				boolean adjacentGoal;
+				if (wantChurch) {
+					goal = churchLoc;
+					adjacentGoal = true;
+				} else if (me.karbonite < karboniteLimit() && me.fuel < fuelLimit()) {
+					goal = assignedLoc;
+					adjacentGoal = false;
+				} else if (churchBuilt) {
+					goal = churchLoc;
+					adjacentGoal = true;
+				} else {
+					goal = myHome;
+					adjacentGoal = true;
+				}
+				int dir;
+				if (!armedEnemyVisible && !armedEnemyRemembered) {
+					// Both legs of the shuttle are kept built, so turning around only costs a rebuild if the leg is old
+					dir = myBfsSolver.pinnedFieldStep(adjacentGoal ? dropoffLeg : resourceLeg, myLoc, goal,
+						SPECS.UNITS[me.unit].SPEED, adjacentGoal, (location) -> { return isOccupiable(location); }
 					);
+				} else {
+					// Walk through danger if we must, but as little of it as possible
+					// We may have been moved off the solution since it was found, e.g. by moveSomewhereSafe
+					myBfsSolver.advanceSolutionTo(myLoc);
 					dir = myBfsSolver.nextStep();
-					newLoc = Vector.add(myLoc, dir);
+					int newLoc = Vector.add(myLoc, dir);
+					if (dir != Vector.INVALID && !isOccupiable(newLoc) && goal == pathGoal && adjacentGoal == pathAdjacentGoal &&
+						myBfsSolver.repairSolution(myLoc, dir, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
+							(location) -> { return isOccupiable(location) && Vector.get(location, isAttacked) != me.turn; })) {
+
+						// Someone is standing in the way, so step around them rather than replanning from scratch
+						dir = myBfsSolver.nextStep();
+						newLoc = Vector.add(myLoc, dir);
+					}
+					if (dir == Vector.INVALID || !isOccupiable(newLoc) || Vector.get(newLoc, isAttacked) == me.turn ||
+						goal != pathGoal || adjacentGoal != pathAdjacentGoal) {
+
+						myBfsSolver.solveWeighted(myLoc, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
+							(location) -> {
+								return adjacentGoal ? Vector.isAdjacent(location, goal) : location == goal;
+							},
+							(location) -> { return isOccupiable(location); },
+							(location) -> { return dangerCost(location); }
+						);
+						if (fuel < fuelReserve() + SCARCE_FUEL_MARGIN) {
+							myBfsSolver.minimiseFuel(myLoc, SPECS.UNITS[me.unit].SPEED, FUEL_SAVING_EXTRA_TURNS,
+								(location) -> { return isOccupiable(location) && Vector.get(location, isAttacked) != me.turn; });
+						}
+						pathGoal = goal;
+						pathAdjacentGoal = adjacentGoal;
+						dir = myBfsSolver.nextStep();
+					}
 				}
-				if (dir != Vector.INVALID && isOccupiable(newLoc) && Vector.get(newLoc, mayBecomeAttacked) != me.turn) {
+				int newLoc = Vector.add(myLoc, dir);
+				if (dir != Vector.INVALID && isOccupiable(newLoc) && Vector.get(newLoc, isAttacked) != me.turn) {
 					myAction = move(Vector.getX(dir), Vector.getY(dir));
 				}
 			}
@@ -1928,32 +2525,43 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private void sendMyAssignedLoc() {
 			if (me.turn == 1) {
-				myCastleTalk = Vector.getX(assignedLoc) | Communicator.PILGRIM;
-			} else if (me.turn == 2) {
-				myCastleTalk = Vector.getY(assignedLoc) | Communicator.PILGRIM;
+				communications.queueCastleLocation(Communicator.FRAME_PILGRIM, assignedLoc);
 			}
 		}
 
+		/**
+		 * Scaled so that a square one prophet can shoot costs IS_ATTACKED_COST,
+		 * and a square it could shoot after a move costs MAY_BE_ATTACKED_COST
+		 */
+		private int dangerCost(int location) {
+			return (threats.getDamageNow(location) * IS_ATTACKED_COST +
+				threats.getExtraDamageAfterMove(location) * MAY_BE_ATTACKED_COST) / SPECS.UNITS[me.unit].STARTING_HP;
+		}
+
+		/**
+		 * Any damage this turn outweighs any amount of damage that needs the enemy to move first
+		 */
+		private int safetyScore(int location) {
+			return threats.getDamageNow(location) * 1000 + threats.getExtraDamageAfterMove(location);
+		}
+
 		private MoveAction moveSomewhereSafe() {
+			int bestDir = Vector.INVALID;
+			int bestScore = safetyScore(myLoc);
 			for (int dx = -2; dx <= 2; dx++) for (int dy = -2; dy <= 2; dy++) {
 				int dir = Vector.makeDirection(dx, dy);
 				if (Vector.magnitude(dir) <= SPECS.UNITS[me.unit].SPEED) {
 					int newLoc = Vector.add(myLoc, dir);
-					if (isOccupiable(newLoc) && Vector.get(newLoc, mayBecomeAttacked) != me.turn) {
-						return move(dx, dy);
+					if (isOccupiable(newLoc) && safetyScore(newLoc) < bestScore) {
+						bestDir = dir;
+						bestScore = safetyScore(newLoc);
 					}
 				}
 			}
-			for (int dx = -2; dx <= 2; dx++) for (int dy = -2; dy <= 2; dy++) {
-				int dir = Vector.makeDirection(dx, dy);
-				if (Vector.magnitude(dir) <= SPECS.UNITS[me.unit].SPEED) {
-					int newLoc = Vector.add(myLoc, dir);
-					if (isOccupiable(newLoc) && Vector.get(newLoc, isAttacked) != me.turn) {
-						return move(dx, dy);
-					}
-				}
+			if (bestDir == Vector.INVALID) {
+				return null; // Guess I'll just die?
 			}
-			return null; // Guess I'll just die?
+			return move(Vector.getX(bestDir), Vector.getY(bestDir));
 		}
 
 		private BuildAction checkToCommenceChurchSpear() {
@@ -2009,18 +2617,11 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			}
 
 			if (myAction == null && fuel >= fuelReserve()) {
-				int dir = myBfsSolver.nextStep();
+				int goal = (distressLoc != Vector.INVALID) ? distressLoc : assignedLoc;
+				int dir = myBfsSolver.fieldStep(myLoc, goal, SPECS.UNITS[me.unit].SPEED, false,
+					(location) -> { return isOccupiable(location) || location == assignedLoc; }
+				);
 				int newLoc = Vector.add(myLoc, dir);
-				if (dir == Vector.INVALID || !isOccupiable(newLoc)) {
-					myBfsSolver.solve(myLoc, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
-						(location) -> {
-							return location == distressLoc || (distressLoc == Vector.INVALID && location == assignedLoc);
-						},
-						(location) -> { return isOccupiable(location) || location == assignedLoc; }
-					);
-					dir = myBfsSolver.nextStep();
-					newLoc = Vector.add(myLoc, dir);
-				}
 				if (dir != Vector.INVALID && isOccupiable(newLoc)) {
 					myAction = move(Vector.getX(dir), Vector.getY(dir));
 				} else if (Vector.get(myLoc, karboniteMap) || Vector.get(myLoc, fuelMap)) {
@@ -2070,29 +2671,21 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			if (activated) {
 				activated = false;
 
-				for (Robot r: visibleRobots) {
-					if (communications.isRadioing(r) && Vector.makeMapLocation(r.x, r.y) == myHome) {
-						int what = communications.readRadio(r);
-						if ((what & 0xf000) == (Communicator.SHED_RADIUS & 0xf000)) {
-							if (Vector.distanceSquared(assignedLoc, myHome) >= (what & 0x0fff)) {
-								mySpecificRobotController = new CircleRobotController(circleLocs, myHome);
-								return mySpecificRobotController.runSpecificTurn();
-							}
-						}
+				for (int k = 0; k < communications.inboxCount(Communicator.SHED_RADIUS); k++) {
+					Robot r = communications.inboxSender(Communicator.SHED_RADIUS, k);
+					int what = communications.inboxMessage(Communicator.SHED_RADIUS, k);
+					if (Vector.makeMapLocation(r.x, r.y) == myHome && Vector.distanceSquared(assignedLoc, myHome) >= (what & 0x0fff)) {
+						mySpecificRobotController = new CircleRobotController(circleLocs, myHome);
+						return mySpecificRobotController.runSpecificTurn();
 					}
 				}
 			}
 
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.ATTACK & 0xf000)) {
-						int loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
-						if (loc != Vector.INVALID) {
-							circleLocs.add(loc);
-							activated = true;
-						}
-					}
+			for (int k = 0; k < communications.inboxCount(Communicator.ATTACK); k++) {
+				int loc = Vector.makeMapLocationFromCompressed(communications.inboxMessage(Communicator.ATTACK, k) & 0x0fff);
+				if (loc != Vector.INVALID) {
+					circleLocs.add(loc);
+					activated = true;
 				}
 			}
 
@@ -2107,9 +2700,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private void sendMyAssignedLoc() {
 			if (me.turn == 1) {
-				myCastleTalk = Vector.getX(assignedLoc) | Communicator.ARMED;
-			} else if (me.turn == 2) {
-				myCastleTalk = Vector.getY(assignedLoc) | Communicator.ARMED;
+				communications.queueCastleLocation(Communicator.FRAME_ARMED, assignedLoc);
 			}
 		}
 	}
@@ -2129,6 +2720,17 @@ public strictfp class MyRobot extends BCAbstractRobot {
 
 		private static final double CIRCLE_EPSILON = 0.5;
 
+		// How much of a search for a circle location to do in one turn
+		private static final int CIRCLE_SEARCH_NODE_BUDGET = 600;
+		private static final int CIRCLE_SEARCH_TIME_BUDGET = 20;
+
+		// How many charging robots are assumed to be sharing the fuel bank
+		private static final int CHARGE_FUEL_SHARE = 40;
+
+		// Trips longer than this are planned on the region graph, which is only built once one comes up
+		private static final int LONG_HAUL_DISTANCE_SQUARED = (2*RegionGraph.SECTOR_SIZE) * (2*RegionGraph.SECTOR_SIZE);
+		private RegionGraph myRegionGraph;
+
 		private double minSminDist;
 
 		private TreeSet<Integer> circleLocs;
@@ -2184,14 +2786,31 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				if (myAction == null && !isPrettyGoodCircleLocation(myLoc)) {
 					int dir = myBfsSolver.nextStep();
 					int newLoc = Vector.add(myLoc, dir);
-					if (dir == Vector.INVALID || !isOccupiable(newLoc) || chargingStatusChanged) {
-						myBfsSolver.solve(myLoc, SPECS.UNITS[me.unit].SPEED, 2,
-							(location) -> { return isPrettyGoodCircleLocation(location); },
-							(location) -> { return isOccupiable(location); }
-						);
+					if (dir != Vector.INVALID && !isOccupiable(newLoc) && !chargingStatusChanged &&
+						myBfsSolver.repairSolution(myLoc, dir, SPECS.UNITS[me.unit].SPEED, 2,
+							(location) -> { return isOccupiable(location); })) {
+
 						dir = myBfsSolver.nextStep();
 						newLoc = Vector.add(myLoc, dir);
 					}
+					if (dir == Vector.INVALID || !isOccupiable(newLoc) || chargingStatusChanged) {
+						// The objective is expensive, so spread the search over several turns if need be
+						if (!myBfsSolver.isSolving() || chargingStatusChanged) {
+							beginCircleSearch();
+						}
+						boolean finished = myBfsSolver.continueSolve(CIRCLE_SEARCH_NODE_BUDGET, CIRCLE_SEARCH_TIME_BUDGET);
+						if (finished && !myBfsSolver.advanceSolutionTo(myLoc)) {
+							// This turn's slice is spent, so the new search starts next turn
+							beginCircleSearch();
+							finished = false;
+						}
+						if (finished) {
+							dir = myBfsSolver.nextStep();
+						} else {
+							dir = myBfsSolver.partialStep(myLoc);
+						}
+						newLoc = Vector.add(myLoc, dir);
+					}
 					if (dir != Vector.INVALID && isOccupiable(newLoc)) {
 						myAction = move(Vector.getX(dir), Vector.getY(dir));
 					}
@@ -2200,11 +2819,39 @@ public strictfp class MyRobot extends BCAbstractRobot {
 				if (myAction == null) {
 					int dir = myBfsSolver.nextStep();
 					int newLoc = Vector.add(myLoc, dir);
-					if (dir == Vector.INVALID || !isOccupiable(newLoc) || chargingStatusChanged) {
-						myBfsSolver.solve(myLoc, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
-							(location) -> { return circleLocs.contains(location); },
-							(location) -> { return isOccupiable(location); }
-						);
+					if (dir != Vector.INVALID && !isOccupiable(newLoc) && !chargingStatusChanged &&
+						myBfsSolver.repairSolution(myLoc, dir, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
+							(location) -> { return isOccupiable(location); })) {
+
+						dir = myBfsSolver.nextStep();
+						newLoc = Vector.add(myLoc, dir);
+					}
+					if (circleLocs.isEmpty()) {
+						// Every target has fallen, so there is nowhere to charge to
+						dir = Vector.INVALID;
+					} else if (dir == Vector.INVALID || !isOccupiable(newLoc) || chargingStatusChanged) {
+						int target = circleLocs.first();
+						if (circleLocs.size() == 1 && Vector.distanceSquared(myLoc, target) > LONG_HAUL_DISTANCE_SQUARED) {
+							// Only worth planning on the region graph for trips that span several sectors
+							if (myRegionGraph == null) {
+								myRegionGraph = new RegionGraph(map, SPECS.UNITS[me.unit].SPEED);
+							}
+							myBfsSolver.solveHierarchical(myLoc, target, SPECS.UNITS[me.unit].SPEED,
+								SPECS.UNITS[me.unit].SPEED, (location) -> { return isOccupiable(location); }, myRegionGraph);
+						} else if (circleLocs.size() == 1) {
+							// A single known target, so meet in the middle
+							myBfsSolver.solveBidirectional(myLoc, target, SPECS.UNITS[me.unit].SPEED,
+								SPECS.UNITS[me.unit].SPEED, (location) -> { return isOccupiable(location); });
+						} else {
+							myBfsSolver.solve(myLoc, SPECS.UNITS[me.unit].SPEED, SPECS.UNITS[me.unit].SPEED,
+								(location) -> { return circleLocs.contains(location); },
+								(location) -> { return isOccupiable(location); }
+							);
+						}
+						// The whole army charges at once, so only plan to use a slice of the fuel bank
+						int fuelBudget = fuel / (CHARGE_FUEL_SHARE * SPECS.UNITS[me.unit].FUEL_PER_MOVE);
+						myBfsSolver.minimiseTurns(myLoc, SPECS.UNITS[me.unit].SPEED, fuelBudget,
+							(location) -> { return isOccupiable(location); });
 						dir = myBfsSolver.nextStep();
 						newLoc = Vector.add(myLoc, dir);
 					}
@@ -2217,34 +2864,41 @@ public strictfp class MyRobot extends BCAbstractRobot {
 			return myAction;
 		}
 
+		private void beginCircleSearch() {
+			int closestCircleLoc = Vector.INVALID;
+			for (Integer loc: circleLocs) {
+				if (closestCircleLoc == Vector.INVALID ||
+					Vector.distanceSquared(myLoc, loc) < Vector.distanceSquared(myLoc, closestCircleLoc)) {
+					closestCircleLoc = loc;
+				}
+			}
+			// Don't plan to walk through anywhere we'd be shot dead on the spot
+			myBfsSolver.beginSolve(myLoc, SPECS.UNITS[me.unit].SPEED, 2,
+				(location) -> { return isPrettyGoodCircleLocation(location); },
+				(location) -> { return isOccupiable(location) && threats.getDamageNow(location) < me.health; },
+				closestCircleLoc
+			);
+		}
+
 		private void checkForAnyExtraCircles() {
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.ATTACK & 0xf000)) {
-						int loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
-						if (loc != Vector.INVALID) {
-							circleLocs.add(loc);
-						}
-					}
+			for (int k = 0; k < communications.inboxCount(Communicator.ATTACK); k++) {
+				int loc = Vector.makeMapLocationFromCompressed(communications.inboxMessage(Communicator.ATTACK, k) & 0x0fff);
+				if (loc != Vector.INVALID) {
+					circleLocs.add(loc);
 				}
 			}
 		}
 
 		private void checkForCircleSuccess() {
-			for (Robot r: visibleRobots) {
-				if (communications.isRadioing(r)) {
-					int what = communications.readRadio(r);
-					if ((what & 0xf000) == (Communicator.CIRCLE_SUCCESS & 0xf000)) {
-						// Sorry but this has to be an Integer object to force the transpiler to do the
-						// remove properly
-						Integer loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
-						if (loc != Vector.INVALID) {
-							circleLocs.remove(loc);
-							amChargingRobot = false;
-							myInitialHealth = me.health;
-						}
-					}
+			for (int k = 0; k < communications.inboxCount(Communicator.CIRCLE_SUCCESS); k++) {
+				int what = communications.inboxMessage(Communicator.CIRCLE_SUCCESS, k);
+				// Sorry but this has to be an Integer object to force the transpiler to do the
+				// remove properly
+				Integer loc = Vector.makeMapLocationFromCompressed(what & 0x0fff);
+				if (loc != Vector.INVALID) {
+					circleLocs.remove(loc);
+					amChargingRobot = false;
+					myInitialHealth = me.health;
 				}
 			}
 			for (Integer loc: circleLocs) {
@@ -2336,8 +2990,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		SpearChurchController(int assignment) {
 			super(assignment);
 
-			myBfsSolver.solve(myLoc, 2, 2,
-				(location) -> { return location == myTarget; },
+			myBfsSolver.solveTowards(myLoc, myTarget, 2, 2,
 				(location) -> { return Vector.get(location, map); });
 			pilgrimBuildDir = myBfsSolver.nextStep();
 
@@ -2383,8 +3036,7 @@ public strictfp class MyRobot extends BCAbstractRobot {
 		SpearPilgrimController(int assignment) {
 			super(assignment);
 
-			myBfsSolver.solve(myLoc, 2, 2,
-				(location) -> { return location == myTarget; },
+			myBfsSolver.solveTowards(myLoc, myTarget, 2, 2,
 				(location) -> { return Vector.get(location, map); });
 			churchBuildDir = myBfsSolver.nextStep();
 		}
@@ -0,0 +1,261 @@
+package bc19;
+
+/**
+ * An abstract graph over the static terrain for long trips (HPA*)
+ * The board is cut into square sectors, every run of open squares along a sector border gets one entrance
+ * on each side, and the distances between entrances of the same sector are worked out once up front
+ * A long query then only searches this small graph, and the robot refines just the first leg on the real board
+ * Crossings that only exist as jumps over a border wall are not represented, so callers should fall back
+ * to a full search when there is no abstract route
+ */
+class RegionGraph {
+
+	static final int SECTOR_SIZE = 8;
+
+	private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private final boolean[][] map;
+	private final int speed;
+	private final int sectorsPerSide;
+
+	// Entrance nodes: their square, their sector, and the node just across the border
+	private int numNodes;
+	private int[] nodeLoc;
+	private int[] nodeSector;
+	private int[] nodePartner;
+
+	// The entrances of each sector, and the in-sector distance between every pair of them
+	private int[][] sectorNodes;
+	private int[] numSectorNodes;
+	private int[][] intraDist;
+
+	// Scratch space for Bfs inside one sector
+	private int[] localDist;
+	private int[] localQueue;
+
+	// Scratch space for the abstract search, where the two extra nodes stand for the source and the target
+	private int[] nodeDist;
+	private int[] nodePrev;
+	private int[] toTarget;
+	private IntMinHeap openSet;
+
+	/**
+	 * @param map The passable terrain
+	 * @param speed The movement speed to measure distances with
+	 */
+	RegionGraph(boolean[][] map, int speed) {
+		this.map = map;
+		this.speed = speed;
+		sectorsPerSide = (MyRobot.boardSize + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		int numSectors = sectorsPerSide*sectorsPerSide;
+
+		// A border of length SECTOR_SIZE has at most SECTOR_SIZE/2+1 separate runs, and there are two borders per sector
+		int maxNodes = numSectors * 2 * 2 * (SECTOR_SIZE/2 + 1);
+		nodeLoc = new int[maxNodes];
+		nodeSector = new int[maxNodes];
+		nodePartner = new int[maxNodes];
+		numNodes = 0;
+
+		localDist = new int[SECTOR_SIZE*SECTOR_SIZE];
+		localQueue = new int[SECTOR_SIZE*SECTOR_SIZE];
+
+		findEntrances();
+
+		sectorNodes = new int[numSectors][];
+		numSectorNodes = new int[numSectors];
+		for (int i = 0; i < numNodes; i++) {
+			numSectorNodes[nodeSector[i]]++;
+		}
+		for (int s = 0; s < numSectors; s++) {
+			sectorNodes[s] = new int[numSectorNodes[s]];
+			numSectorNodes[s] = 0;
+		}
+		for (int i = 0; i < numNodes; i++) {
+			int s = nodeSector[i];
+			sectorNodes[s][numSectorNodes[s]] = i;
+			numSectorNodes[s]++;
+		}
+
+		intraDist = new int[numNodes][];
+		for (int i = 0; i < numNodes; i++) {
+			int s = nodeSector[i];
+			intraDist[i] = new int[numSectorNodes[s]];
+			sectorBfs(nodeLoc[i], s);
+			for (int k = 0; k < numSectorNodes[s]; k++) {
+				intraDist[i][k] = localDist[localIndex(nodeLoc[sectorNodes[s][k]], s)];
+			}
+		}
+
+		nodeDist = new int[numNodes+2];
+		nodePrev = new int[numNodes+2];
+		toTarget = new int[numNodes];
+		openSet = new IntMinHeap(numNodes+2);
+	}
+
+	int getSector(int location) {
+		return (Vector.getY(location) / SECTOR_SIZE) * sectorsPerSide + Vector.getX(location) / SECTOR_SIZE;
+	}
+
+	private int localIndex(int location, int sector) {
+		int x = Vector.getX(location) - (sector % sectorsPerSide) * SECTOR_SIZE;
+		int y = Vector.getY(location) - (sector / sectorsPerSide) * SECTOR_SIZE;
+		return y*SECTOR_SIZE + x;
+	}
+
+	private void findEntrances() {
+		for (int sy = 0; sy < sectorsPerSide; sy++) for (int sx = 0; sx < sectorsPerSide; sx++) {
+			int x0 = sx*SECTOR_SIZE, y0 = sy*SECTOR_SIZE;
+			int x1 = Math.min(MyRobot.boardSize, x0+SECTOR_SIZE), y1 = Math.min(MyRobot.boardSize, y0+SECTOR_SIZE);
+			// The border with the sector to the right
+			if (x1 < MyRobot.boardSize) {
+				int runStart = -1;
+				for (int y = y0; y <= y1; y++) {
+					boolean open = y < y1 && map[y][x1-1] && map[y][x1];
+					if (open && runStart == -1) {
+						runStart = y;
+					} else if (!open && runStart != -1) {
+						int mid = (runStart + y - 1) / 2;
+						addEntrancePair(Vector.makeMapLocation(x1-1, mid), Vector.makeMapLocation(x1, mid));
+						runStart = -1;
+					}
+				}
+			}
+			// The border with the sector below
+			if (y1 < MyRobot.boardSize) {
+				int runStart = -1;
+				for (int x = x0; x <= x1; x++) {
+					boolean open = x < x1 && map[y1-1][x] && map[y1][x];
+					if (open && runStart == -1) {
+						runStart = x;
+					} else if (!open && runStart != -1) {
+						int mid = (runStart + x - 1) / 2;
+						addEntrancePair(Vector.makeMapLocation(mid, y1-1), Vector.makeMapLocation(mid, y1));
+						runStart = -1;
+					}
+				}
+			}
+		}
+	}
+
+	private void addEntrancePair(int locA, int locB) {
+		nodeLoc[numNodes] = locA;
+		nodeSector[numNodes] = getSector(locA);
+		nodePartner[numNodes] = numNodes+1;
+		nodeLoc[numNodes+1] = locB;
+		nodeSector[numNodes+1] = getSector(locB);
+		nodePartner[numNodes+1] = numNodes;
+		numNodes += 2;
+	}
+
+	/**
+	 * A Bfs over the static terrain that never leaves the given sector, leaving its results in localDist
+	 */
+	private void sectorBfs(int origin, int sector) {
+		for (int i = 0; i < localDist.length; i++) {
+			localDist[i] = UNREACHABLE;
+		}
+		int head = 0, tail = 0;
+		localDist[localIndex(origin, sector)] = 0;
+		localQueue[tail] = origin;
+		tail++;
+		while (head < tail) {
+			int uLoc = localQueue[head];
+			head++;
+			int ud = localDist[localIndex(uLoc, sector)];
+			for (int msk = MoveTable.movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+				int v = uLoc + BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				if (getSector(v) == sector && localDist[localIndex(v, sector)] == UNREACHABLE) {
+					localDist[localIndex(v, sector)] = ud+1;
+					localQueue[tail] = v;
+					tail++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plans a route on the abstract graph and reports where to head for first
+	 * @param source The start of the trip, serialised by the Vector class
+	 * @param target The end of the trip
+	 * @return The first square on the route outside the source's sector, the target itself if it is
+	 * close enough to path to directly, or Vector.INVALID if the abstract graph has no route
+	 */
+	int firstWaypoint(int source, int target) {
+		if (source == Vector.INVALID || target == Vector.INVALID) {
+			return Vector.INVALID;
+		}
+		int sourceSector = getSector(source), targetSector = getSector(target);
+		if (Math.abs(sourceSector % sectorsPerSide - targetSector % sectorsPerSide) <= 1 &&
+			Math.abs(sourceSector / sectorsPerSide - targetSector / sectorsPerSide) <= 1) {
+
+			return target;
+		}
+
+		int sourceNode = numNodes, targetNode = numNodes+1;
+		for (int i = 0; i < numNodes+2; i++) {
+			nodeDist[i] = UNREACHABLE;
+			nodePrev[i] = -1;
+		}
+		for (int i = 0; i < numNodes; i++) {
+			toTarget[i] = UNREACHABLE;
+		}
+		sectorBfs(target, targetSector);
+		for (int k = 0; k < numSectorNodes[targetSector]; k++) {
+			int node = sectorNodes[targetSector][k];
+			toTarget[node] = localDist[localIndex(nodeLoc[node], targetSector)];
+		}
+
+		openSet.clear();
+		sectorBfs(source, sourceSector);
+		nodeDist[sourceNode] = 0;
+		for (int k = 0; k < numSectorNodes[sourceSector]; k++) {
+			int node = sectorNodes[sourceSector][k];
+			int d = localDist[localIndex(nodeLoc[node], sourceSector)];
+			if (d != UNREACHABLE) {
+				nodeDist[node] = d;
+				nodePrev[node] = sourceNode;
+				openSet.push(node, d);
+			}
+		}
+
+		while (!openSet.isEmpty()) {
+			int u = openSet.poll();
+			if (u == targetNode) {
+				break;
+			}
+			int ud = nodeDist[u];
+			if (toTarget[u] != UNREACHABLE && ud + toTarget[u] < nodeDist[targetNode]) {
+				nodeDist[targetNode] = ud + toTarget[u];
+				nodePrev[targetNode] = u;
+				openSet.push(targetNode, nodeDist[targetNode]);
+			}
+			int p = nodePartner[u];
+			if (ud+1 < nodeDist[p]) {
+				nodeDist[p] = ud+1;
+				nodePrev[p] = u;
+				openSet.push(p, ud+1);
+			}
+			int s = nodeSector[u];
+			for (int k = 0; k < numSectorNodes[s]; k++) {
+				int v = sectorNodes[s][k];
+				if (intraDist[u][k] != UNREACHABLE && ud + intraDist[u][k] < nodeDist[v]) {
+					nodeDist[v] = ud + intraDist[u][k];
+					nodePrev[v] = u;
+					openSet.push(v, nodeDist[v]);
+				}
+			}
+		}
+		if (nodePrev[targetNode] == -1) {
+			return Vector.INVALID;
+		}
+
+		// Walk back to the first node that is outside the source's sector
+		int waypoint = target;
+		for (int node = nodePrev[targetNode]; node != sourceNode; node = nodePrev[node]) {
+			if (nodeSector[node] != sourceSector) {
+				waypoint = nodeLoc[node];
+			}
+		}
+		return waypoint;
+	}
+}
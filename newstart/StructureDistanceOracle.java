@@ -0,0 +1,118 @@
+package bc19;
+
+/**
+ * A multi-source Bfs over the terrain, labelling every square with its nearest source and the path distance to it
+ * Sources are keyed by robot id; ties in distance go to the lowest id, so every castle computes the same labels
+ * Adding or removing a source only re-propagates the squares whose labels change
+ */
+class StructureDistanceOracle {
+
+	static final int UNREACHABLE = Integer.MAX_VALUE;
+	static final int NO_SOURCE = -1;
+
+	private final boolean[][] map;
+	private final int speed;
+
+	private int[][] dist;
+	private int[][] owner;
+	private DankQueue<Integer> q;
+	private int version;
+
+	/**
+	 * @param map The passable terrain
+	 * @param speed The movement speed used to measure distances, usually that of a pilgrim
+	 */
+	StructureDistanceOracle(boolean[][] map, int speed) {
+		this.map = map;
+		this.speed = speed;
+
+		dist = new int[MyRobot.boardSize][MyRobot.boardSize];
+		owner = new int[MyRobot.boardSize][MyRobot.boardSize];
+		for (int i = 0; i < MyRobot.boardSize; i++) for (int j = 0; j < MyRobot.boardSize; j++) {
+			dist[i][j] = UNREACHABLE;
+			owner[i][j] = NO_SOURCE;
+		}
+		q = new DankQueue<>(MyRobot.boardSize*MyRobot.boardSize);
+		version = 0;
+	}
+
+	/**
+	 * @return A number that changes every time the labels might have changed
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	int getDistance(int location) {
+		return Vector.get(location, dist);
+	}
+
+	int getOwner(int location) {
+		return Vector.get(location, owner);
+	}
+
+	private boolean improves(int location, int newDist, int newOwner) {
+		int oldDist = Vector.get(location, dist);
+		return newDist < oldDist || (newDist == oldDist && newOwner < Vector.get(location, owner));
+	}
+
+	/**
+	 * Label-correcting propagation from whatever is in the queue
+	 */
+	private void propagate() {
+		while (!q.isEmpty()) {
+			int uLoc = q.poll();
+			int nd = Vector.get(uLoc, dist)+1;
+			int no = Vector.get(uLoc, owner);
+			for (int msk = MoveTable.movesFrom(uLoc, speed); msk != 0; msk ^= (msk&-msk)) {
+				int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+				int v = uLoc + dir;
+				if (Vector.get(v, map) && improves(v, nd, no)) {
+					Vector.set(v, dist, nd);
+					Vector.set(v, owner, no);
+					q.add(v);
+				}
+			}
+		}
+	}
+
+	void addSource(int id, int location) {
+		if (location == Vector.INVALID || !improves(location, 0, id)) {
+			return;
+		}
+		version++;
+		q.clear();
+		Vector.set(location, dist, 0);
+		Vector.set(location, owner, id);
+		q.add(location);
+		propagate();
+	}
+
+	void removeSource(int id) {
+		version++;
+		q.clear();
+
+		// Forget everything the source owned...
+		for (int i = 0; i < MyRobot.boardSize; i++) for (int j = 0; j < MyRobot.boardSize; j++) {
+			if (owner[j][i] == id) {
+				dist[j][i] = UNREACHABLE;
+				owner[j][i] = NO_SOURCE;
+			}
+		}
+		// ...and let the neighbouring territories flow back in
+		for (int i = 0; i < MyRobot.boardSize; i++) for (int j = 0; j < MyRobot.boardSize; j++) {
+			if (owner[j][i] != NO_SOURCE) {
+				int loc = Vector.makeMapLocation(i, j);
+				for (int msk = MoveTable.movesFrom(loc, speed); msk != 0; msk ^= (msk&-msk)) {
+					int dir = BfsSolver.allMoves[MoveTable.lowestBit(msk)];
+					int v = loc + dir;
+					if (Vector.get(v, owner) == NO_SOURCE && Vector.get(v, map)) {
+						q.add(loc);
+						break;
+					}
+				}
+			}
+		}
+		propagate();
+	}
+}
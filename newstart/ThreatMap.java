@@ -0,0 +1,88 @@
+package bc19;
+
+/**
+ * How much damage every visible enemy could deal to each square, summed over enemies
+ * Two layers: what could land this turn, and what could land once the enemies have had a move
+ * Values from earlier turns are cleared lazily, by stamping each square with the turn it was written
+ */
+class ThreatMap {
+
+	private int[][] damageNow;
+	private int[][] damageAfterMove;
+	private int[][] stamp;
+	private int turn;
+
+	ThreatMap() {
+		damageNow = new int[MyRobot.boardSize][MyRobot.boardSize];
+		damageAfterMove = new int[MyRobot.boardSize][MyRobot.boardSize];
+		stamp = new int[MyRobot.boardSize][MyRobot.boardSize];
+		turn = 0;
+	}
+
+	/**
+	 * Forgets every threat from previous turns
+	 */
+	void startTurn(int newTurn) {
+		turn = newTurn;
+	}
+
+	private void touch(int location) {
+		if (Vector.get(location, stamp) != turn) {
+			Vector.set(location, stamp, turn);
+			Vector.set(location, damageNow, 0);
+			Vector.set(location, damageAfterMove, 0);
+		}
+	}
+
+	/**
+	 * Adds one enemy's threat
+	 * @param location Where the enemy stands
+	 * @param damage How much one of its attacks deals
+	 * @param nowStencil Offsets of the squares it can hit from where it stands
+	 * @param afterMoveStencil Offsets of the squares it can hit after moving
+	 */
+	void addThreat(int location, int damage, int[] nowStencil, int[] afterMoveStencil) {
+		for (int dir: nowStencil) {
+			int affectLoc = Vector.add(location, dir);
+			if (affectLoc != Vector.INVALID) {
+				touch(affectLoc);
+				Vector.set(affectLoc, damageNow, Vector.get(affectLoc, damageNow) + damage);
+			}
+		}
+		addPossibleThreat(location, damage, afterMoveStencil);
+	}
+
+	/**
+	 * Adds a threat that can only reach us after a move, such as an enemy that was last seen a few turns ago
+	 */
+	void addPossibleThreat(int location, int damage, int[] afterMoveStencil) {
+		for (int dir: afterMoveStencil) {
+			int affectLoc = Vector.add(location, dir);
+			if (affectLoc != Vector.INVALID) {
+				touch(affectLoc);
+				Vector.set(affectLoc, damageAfterMove, Vector.get(affectLoc, damageAfterMove) + damage);
+			}
+		}
+	}
+
+	int getDamageNow(int location) {
+		if (location == Vector.INVALID || Vector.get(location, stamp) != turn) {
+			return 0;
+		}
+		return Vector.get(location, damageNow);
+	}
+
+	int getDamageAfterMove(int location) {
+		if (location == Vector.INVALID || Vector.get(location, stamp) != turn) {
+			return 0;
+		}
+		return Vector.get(location, damageAfterMove);
+	}
+
+	/**
+	 * The damage that only the enemies' next move would bring, on top of this turn's
+	 */
+	int getExtraDamageAfterMove(int location) {
+		return Math.max(0, getDamageAfterMove(location) - getDamageNow(location));
+	}
+}